@@ -0,0 +1,47 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.JSInterfaces.JSContainerFactory;
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSTypes.IndexedHashMap;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Default {@link JSContainerFactory} that creates {@link IndexedHashMap} for
+ * objects and {@link ArrayList} for arrays presized according to the hint
+ */
+public class DefaultJSContainerFactory implements JSContainerFactory, Serializable {
+
+  private static final DefaultJSContainerFactory instance = new DefaultJSContainerFactory();
+
+  /**
+   * Size hints are not trusted beyond this value to avoid overallocation
+   */
+  private static final int MAX_PRESIZE = 1024;
+
+  public static DefaultJSContainerFactory get() {
+    return instance;
+  }
+
+  @Override
+  public JSObject newObject(int depth, int sizeHint) {
+    if (sizeHint <= 0) {
+      return new IndexedHashMap<>();
+    }
+    // enough capacity to hold sizeHint entries with the default load factor
+    return new IndexedHashMap<>(Math.min(sizeHint, MAX_PRESIZE) * 4 / 3 + 1);
+  }
+
+  @Override
+  public List newArray(int depth, int sizeHint) {
+    if (sizeHint <= 0) {
+      return new ArrayList<>();
+    }
+    return new ArrayList<>(Math.min(sizeHint, MAX_PRESIZE));
+  }
+
+  private Object readResolve() {
+    return instance;
+  }
+}
@@ -0,0 +1,483 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.Tokens.StringCache;
+import com.metarhia.jstp.core.Tokens.Token;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Binds serialized values directly to the instances of the plain Java classes
+ * without building intermediate JSObjects, e.g.
+ * <pre>
+ *   User user = JSBinder.parse("{name: 'Marcus', age: 54, tags: ['emperor']}", User.class);
+ * </pre>
+ * Target classes must have a constructor without parameters (it may be private),
+ * values of the object are assigned to the non-static, non-final, non-transient
+ * fields with the same names (including inherited ones), unknown keys are skipped.
+ * Supported field types are primitives and their wrappers, String, enums (bound
+ * from the names of the constants), arrays, Lists and Collections (element type is
+ * taken from the type argument), other bindable classes and Object, Map or
+ * JSObject, that receive values as they are returned by {@link JSParser}.
+ * <p>
+ * Fields and constructors are looked up once per class and cached, binder can be
+ * used from multiple threads. Numbers are converted to the field type the same
+ * way as the Java casts do it, null values leave primitive fields unchanged.
+ */
+public final class JSBinder {
+
+  private static final ConcurrentMap<Type, Binding> bindings = new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<JSParser> threadParser = new ThreadLocal<JSParser>() {
+    @Override
+    protected JSParser initialValue() {
+      final JSParser parser = new JSParser();
+      parser.setKeyCache(new StringCache());
+      return parser;
+    }
+  };
+
+  private JSBinder() {
+  }
+
+  /**
+   * @throws IllegalArgumentException if {@param type} can't be bound to
+   */
+  public static <T> T parse(String input, Class<T> type) throws JSParsingException {
+    final JSParser parser = threadParser.get();
+    parser.setInput(input);
+    try {
+      return bind(parser, type);
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * Parses UTF-8 encoded {@param input}
+   *
+   * @see #parse(String, Class)
+   */
+  public static <T> T parse(byte[] input, int offset, int length, Class<T> type)
+      throws JSParsingException {
+    final JSParser parser = threadParser.get();
+    parser.setInput(input, offset, length);
+    try {
+      return bind(parser, type);
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * Binds the value starting with the next token of the {@param parser}
+   *
+   * @see #parse(String, Class)
+   */
+  public static <T> T bind(JSParser parser, Class<T> type) throws JSParsingException {
+    final Binding binding = bindingFor(type);
+    parser.getTokenizer().next();
+    return (T) binding.read(parser);
+  }
+
+  private static Binding bindingFor(Type type) {
+    Binding binding = bindings.get(type);
+    if (binding == null) {
+      binding = createBinding(type);
+      final Binding prev = bindings.putIfAbsent(type, binding);
+      if (prev != null) {
+        binding = prev;
+      }
+    }
+    return binding;
+  }
+
+  private static Binding createBinding(Type type) {
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType parameterized = (ParameterizedType) type;
+      final Class<?> raw = (Class<?>) parameterized.getRawType();
+      if (raw.isAssignableFrom(ArrayList.class)) {
+        return new ListBinding(parameterized.getActualTypeArguments()[0]);
+      }
+      return createBinding(raw);
+    } else if (type instanceof GenericArrayType) {
+      final Type componentType = ((GenericArrayType) type).getGenericComponentType();
+      return new ArrayBinding(componentType, rawClass(componentType));
+    } else if (!(type instanceof Class)) {
+      // type variables and wildcards
+      return GenericBinding.INSTANCE;
+    }
+
+    final Class<?> cls = (Class<?>) type;
+    if (cls == Object.class || Map.class.isAssignableFrom(cls)) {
+      return GenericBinding.INSTANCE;
+    } else if (cls == String.class) {
+      return new ScalarBinding(ScalarBinding.STRING, cls);
+    } else if (cls == boolean.class || cls == Boolean.class) {
+      return new ScalarBinding(ScalarBinding.BOOLEAN, cls);
+    } else if (cls == char.class || cls == Character.class) {
+      return new ScalarBinding(ScalarBinding.CHAR, cls);
+    } else if (cls.isPrimitive() || Number.class.isAssignableFrom(cls)) {
+      return new ScalarBinding(ScalarBinding.NUMBER, cls);
+    } else if (cls.isEnum()) {
+      return new ScalarBinding(ScalarBinding.ENUM, cls);
+    } else if (cls.isArray()) {
+      return new ArrayBinding(cls.getComponentType(), cls.getComponentType());
+    } else if (Collection.class.isAssignableFrom(cls)) {
+      if (!cls.isAssignableFrom(ArrayList.class)) {
+        throw new IllegalArgumentException("Unsupported collection type: " + cls.getName());
+      }
+      return new ListBinding(Object.class);
+    }
+    return new ClassBinding(cls);
+  }
+
+  private static Class<?> rawClass(Type type) {
+    if (type instanceof Class) {
+      return (Class<?>) type;
+    } else if (type instanceof ParameterizedType) {
+      return (Class<?>) ((ParameterizedType) type).getRawType();
+    } else if (type instanceof GenericArrayType) {
+      final Class<?> component = rawClass(((GenericArrayType) type).getGenericComponentType());
+      return Array.newInstance(component, 0).getClass();
+    }
+    return Object.class;
+  }
+
+  /**
+   * Skips the value starting with the last token
+   */
+  private static void skipValue(Tokenizer tokenizer) throws JSParsingException {
+    switch (tokenizer.getLastToken()) {
+      case CURLY_OPEN:
+      case SQ_OPEN:
+        tokenizer.skipContainer();
+        break;
+      case STRING:
+      case NUMBER:
+      case TRUE:
+      case FALSE:
+      case NULL:
+      case UNDEFINED:
+        break;
+      case KEY:
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            tokenizer.getStr() + " is not defined");
+      default:
+        throw new JSParsingException(tokenizer.getPrevIndex(), JSParser.DEFAULT_PARSE_ERROR_MSG);
+    }
+  }
+
+  private static boolean isNull(Token token) {
+    return token == Token.NULL || token == Token.UNDEFINED;
+  }
+
+  /**
+   * Reads values of the specific type
+   */
+  private interface Binding {
+
+    /**
+     * Reads the value starting with the last token of the {@param parser},
+     * the last token of the value stays the last token of the parser
+     */
+    Object read(JSParser parser) throws JSParsingException;
+  }
+
+  private static final class GenericBinding implements Binding {
+
+    static final GenericBinding INSTANCE = new GenericBinding();
+
+    @Override
+    public Object read(JSParser parser) throws JSParsingException {
+      return parser.parseInternal();
+    }
+  }
+
+  private static final class ScalarBinding implements Binding {
+
+    static final int STRING = 0;
+    static final int BOOLEAN = 1;
+    static final int CHAR = 2;
+    static final int NUMBER = 3;
+    static final int ENUM = 4;
+
+    final int kind;
+
+    final Class<?> type;
+
+    ScalarBinding(int kind, Class<?> type) {
+      this.kind = kind;
+      this.type = type;
+    }
+
+    @Override
+    public Object read(JSParser parser) throws JSParsingException {
+      final Tokenizer tokenizer = parser.getTokenizer();
+      final Token token = tokenizer.getLastToken();
+      if (isNull(token)) {
+        return null;
+      }
+      switch (kind) {
+        case STRING:
+          if (token == Token.STRING) {
+            return tokenizer.getStr();
+          }
+          break;
+        case BOOLEAN:
+          if (token == Token.TRUE || token == Token.FALSE) {
+            return token == Token.TRUE;
+          }
+          break;
+        case CHAR:
+          if (token == Token.STRING && tokenizer.getStr().length() == 1) {
+            return tokenizer.getStr().charAt(0);
+          }
+          break;
+        case NUMBER:
+          if (token == Token.NUMBER) {
+            return readNumber(tokenizer);
+          }
+          break;
+        default:
+          if (token == Token.STRING) {
+            try {
+              return Enum.valueOf((Class<Enum>) type, tokenizer.getStr());
+            } catch (IllegalArgumentException e) {
+              throw new JSParsingException(tokenizer.getPrevIndex(),
+                  "Unknown constant of " + type.getSimpleName() + ": " + tokenizer.getStr());
+            }
+          }
+      }
+      throw new JSParsingException(tokenizer.getPrevIndex(),
+          "Expected value of type " + type.getSimpleName());
+    }
+
+    private Object readNumber(Tokenizer tokenizer) {
+      final boolean integer = tokenizer.isIntegerNumber();
+      final long longValue = integer
+          ? tokenizer.getLongNumber() : (long) tokenizer.getDoubleNumber();
+      if (type == int.class || type == Integer.class) {
+        return (int) longValue;
+      } else if (type == long.class || type == Long.class) {
+        return longValue;
+      } else if (type == double.class || type == Double.class) {
+        return integer ? (double) longValue : tokenizer.getDoubleNumber();
+      } else if (type == float.class || type == Float.class) {
+        return integer ? (float) longValue : (float) tokenizer.getDoubleNumber();
+      } else if (type == short.class || type == Short.class) {
+        return (short) longValue;
+      } else if (type == byte.class || type == Byte.class) {
+        return (byte) longValue;
+      }
+      // Number or its other subclasses
+      return tokenizer.getNumber();
+    }
+  }
+
+  private static class ListBinding implements Binding {
+
+    private final Type elementType;
+
+    private volatile Binding elementBinding;
+
+    ListBinding(Type elementType) {
+      this.elementType = elementType;
+    }
+
+    @Override
+    public Object read(JSParser parser) throws JSParsingException {
+      final Tokenizer tokenizer = parser.getTokenizer();
+      if (isNull(tokenizer.getLastToken())) {
+        return null;
+      }
+      if (tokenizer.getLastToken() != Token.SQ_OPEN) {
+        throw new JSParsingException(tokenizer.getPrevIndex(), "Expected array");
+      }
+      Binding binding = elementBinding;
+      if (binding == null) {
+        // resolved lazily to allow recursive types
+        elementBinding = binding = bindingFor(elementType);
+      }
+      final List<Object> list = new ArrayList<>();
+      while (tokenizer.next() != Token.SQ_CLOSE) {
+        if (tokenizer.getLastToken() == Token.COMMA) {
+          // hole in the array
+          list.add(null);
+          continue;
+        }
+        list.add(binding.read(parser));
+        if (tokenizer.next() != Token.COMMA) {
+          if (tokenizer.getLastToken() != Token.SQ_CLOSE) {
+            throw new JSParsingException(tokenizer.getPrevIndex(),
+                "Expected ',' as separator of array elements");
+          }
+          break;
+        }
+      }
+      return list;
+    }
+  }
+
+  private static final class ArrayBinding extends ListBinding {
+
+    private final Class<?> componentType;
+
+    ArrayBinding(Type elementType, Class<?> componentType) {
+      super(elementType);
+      this.componentType = componentType;
+    }
+
+    @Override
+    public Object read(JSParser parser) throws JSParsingException {
+      final List<Object> list = (List<Object>) super.read(parser);
+      if (list == null) {
+        return null;
+      }
+      final Object array = Array.newInstance(componentType, list.size());
+      for (int i = 0; i < list.size(); i++) {
+        final Object value = list.get(i);
+        if (value != null || !componentType.isPrimitive()) {
+          Array.set(array, i, value);
+        }
+      }
+      return array;
+    }
+  }
+
+  private static final class ClassBinding implements Binding {
+
+    private final Class<?> type;
+
+    private final Constructor<?> constructor;
+
+    /**
+     * Bindings of the fields by their names, resolved on the first use
+     * to allow recursive types
+     */
+    private volatile Map<String, FieldBinding> fields;
+
+    ClassBinding(Class<?> type) {
+      if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+        throw new IllegalArgumentException("Cannot bind to abstract type: " + type.getName());
+      }
+      this.type = type;
+      try {
+        constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+      } catch (NoSuchMethodException e) {
+        throw new IllegalArgumentException(
+            "Bound class must have constructor without parameters: " + type.getName(), e);
+      }
+    }
+
+    @Override
+    public Object read(JSParser parser) throws JSParsingException {
+      final Tokenizer tokenizer = parser.getTokenizer();
+      if (isNull(tokenizer.getLastToken())) {
+        return null;
+      }
+      if (tokenizer.getLastToken() != Token.CURLY_OPEN) {
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            "Expected object of type " + type.getSimpleName());
+      }
+      final Map<String, FieldBinding> fields = getFields();
+      final Object instance = newInstance();
+      while (tokenizer.next() != Token.CURLY_CLOSE) {
+        final String key = tokenizer.getStr();
+        if (key == null) {
+          throw new JSParsingException(tokenizer.getPrevIndex(), "Expected valid key");
+        }
+        if (tokenizer.next() != Token.COLON) {
+          throw new JSParsingException(tokenizer.getPrevIndex(),
+              "Expected ':' as separator of Key and Value");
+        }
+        tokenizer.next();
+        final FieldBinding field = fields.get(key);
+        if (field != null) {
+          field.set(instance, field.binding.read(parser));
+        } else {
+          skipValue(tokenizer);
+        }
+        if (tokenizer.next() != Token.COMMA) {
+          if (tokenizer.getLastToken() != Token.CURLY_CLOSE) {
+            throw new JSParsingException(tokenizer.getPrevIndex(),
+                "Expected ',' as key-value pairs separator");
+          }
+          break;
+        }
+      }
+      return instance;
+    }
+
+    private Object newInstance() {
+      try {
+        return constructor.newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new RuntimeException("Cannot create instance of " + type.getName(), e);
+      }
+    }
+
+    private Map<String, FieldBinding> getFields() {
+      Map<String, FieldBinding> result = fields;
+      if (result == null) {
+        result = new HashMap<>();
+        for (Class<?> cls = type; cls != Object.class; cls = cls.getSuperclass()) {
+          for (Field field : cls.getDeclaredFields()) {
+            final int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)
+                || Modifier.isTransient(modifiers) || field.isSynthetic()
+                || result.containsKey(field.getName())) {
+              // fields of the subclasses hide the ones of the superclasses
+              continue;
+            }
+            field.setAccessible(true);
+            result.put(field.getName(),
+                new FieldBinding(field, bindingFor(field.getGenericType())));
+          }
+        }
+        fields = result;
+      }
+      return result;
+    }
+  }
+
+  private static final class FieldBinding {
+
+    final Field field;
+
+    final Binding binding;
+
+    FieldBinding(Field field, Binding binding) {
+      this.field = field;
+      this.binding = binding;
+    }
+
+    void set(Object instance, Object value) throws JSParsingException {
+      if (value == null && field.getType().isPrimitive()) {
+        return;
+      }
+      try {
+        field.set(instance, value);
+      } catch (IllegalArgumentException e) {
+        // e.g. generic value doesn't fit the declared Map type
+        throw new JSParsingException("Cannot assign " + value.getClass().getSimpleName()
+            + " to field " + field.getName());
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException("Cannot access field " + field.getName(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.JSInterfaces.JSSerializable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializer that writes UTF-8 encoded values (see {@link JSSerializer}) to
+ * {@link OutputStream} or {@link ByteBuffer} sinks. Values are serialized into
+ * a reusable builder (as {@link JSSerializable} types only support StringBuilder)
+ * and then encoded straight into the sink or reusable byte buffer, so no
+ * intermediate Strings or byte arrays are created per value.
+ * <p>
+ * This class is not thread-safe, use one instance per thread.
+ */
+public class JSByteSerializer {
+
+  public static final int DEFAULT_CAPACITY = 256;
+
+  /**
+   * Max size of the internal buffers that are kept between the calls
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  private StringBuilder builder = new StringBuilder(DEFAULT_CAPACITY);
+
+  private byte[] buffer = new byte[DEFAULT_CAPACITY];
+
+  /**
+   * Serializes {@param value} into the internal buffer
+   *
+   * @return number of bytes written to the buffer (see {@link #getBuffer()})
+   */
+  public int serialize(Object value) {
+    return encode(stringify(value));
+  }
+
+  /**
+   * Encodes already serialized {@param value} into the internal buffer
+   *
+   * @return number of bytes written to the buffer (see {@link #getBuffer()})
+   */
+  public int encode(CharSequence value) {
+    return encodeToBuffer(value, 0);
+  }
+
+  /**
+   * Same as {@link #encode(CharSequence)} but also appends {@param terminator}
+   * byte right after the value (e.g. separator of the network messages)
+   *
+   * @return number of bytes written to the buffer including the terminator
+   */
+  public int encode(CharSequence value, byte terminator) {
+    final int length = encodeToBuffer(value, 1);
+    buffer[length] = terminator;
+    return length + 1;
+  }
+
+  /**
+   * Serializes {@param value} and writes it to the {@param out}
+   */
+  public void serialize(Object value, OutputStream out) throws IOException {
+    final int length = serialize(value);
+    out.write(buffer, 0, length);
+    trimBuffers();
+  }
+
+  /**
+   * Serializes {@param value} and puts it into the {@param out} starting at its position
+   *
+   * @throws BufferOverflowException if there is not enough room in {@param out},
+   *                                 its position is not changed then
+   */
+  public void serialize(Object value, ByteBuffer out) {
+    final CharSequence chars = stringify(value);
+    final int length = Utils.utf8Length(chars, 0, chars.length());
+    if (length > out.remaining()) {
+      throw new BufferOverflowException();
+    }
+    if (out.hasArray()) {
+      // encode right into the backing array
+      final int position = out.position();
+      Utils.encodeUtf8(chars, 0, chars.length(), out.array(), out.arrayOffset() + position);
+      out.position(position + length);
+    } else {
+      out.put(buffer, 0, encodeToBuffer(chars, 0));
+    }
+    trimBuffers();
+  }
+
+  /**
+   * @return internal buffer containing the result of the last {@link #serialize(Object)}
+   *         or {@link #encode(CharSequence)} call, it is valid until the next call
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  private CharSequence stringify(Object value) {
+    builder.setLength(0);
+    return JSSerializer.stringify(value, builder);
+  }
+
+  /**
+   * Encodes {@param value} into the internal buffer leaving {@param extra}
+   * bytes of room after it
+   */
+  private int encodeToBuffer(CharSequence value, int extra) {
+    final int chars = value.length();
+    // every char takes at most 3 bytes (surrogate pairs take 4 bytes for 2 chars)
+    if (buffer.length < chars * 3 + extra) {
+      final int length = Utils.utf8Length(value, 0, chars) + extra;
+      if (buffer.length < length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
+    }
+    return Utils.encodeUtf8(value, 0, chars, buffer, 0);
+  }
+
+  private void trimBuffers() {
+    if (builder.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      builder = new StringBuilder(DEFAULT_CAPACITY);
+    }
+    if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+      buffer = new byte[DEFAULT_CAPACITY];
+    }
+  }
+}
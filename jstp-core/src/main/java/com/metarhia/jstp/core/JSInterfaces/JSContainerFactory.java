@@ -0,0 +1,32 @@
+package com.metarhia.jstp.core.JSInterfaces;
+
+import java.util.List;
+
+/**
+ * Creates containers for the objects and arrays produced by the parsers,
+ * allows to supply specialized or preallocated containers
+ */
+public interface JSContainerFactory {
+
+  /**
+   * Creates container for the next object of the input
+   *
+   * @param depth    nesting depth of the object (0 for the outermost one)
+   * @param sizeHint number of entries in the previous object at the same depth
+   *                 or 0 if there was no such object
+   *
+   * @return empty object to be filled by the parser
+   */
+  JSObject newObject(int depth, int sizeHint);
+
+  /**
+   * Creates container for the next array of the input
+   *
+   * @param depth    nesting depth of the array (0 for the outermost one)
+   * @param sizeHint number of elements in the previous array at the same depth
+   *                 or 0 if there was no such array
+   *
+   * @return empty array to be filled by the parser
+   */
+  List newArray(int depth, int sizeHint);
+}
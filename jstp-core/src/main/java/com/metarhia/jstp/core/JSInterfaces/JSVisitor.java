@@ -0,0 +1,49 @@
+package com.metarhia.jstp.core.JSInterfaces;
+
+/**
+ * Receives parsing events from {@link com.metarhia.jstp.core.JSParser#visit(JSVisitor)}
+ * in the order values appear in the input, so values can be processed without
+ * building intermediate JSObjects and Lists
+ */
+public interface JSVisitor {
+
+  /**
+   * Called on '{' of an object
+   */
+  void onObjectStart();
+
+  /**
+   * Called for every key of an object right before its value
+   *
+   * @param key key of the next value
+   */
+  void onKey(String key);
+
+  /**
+   * Called on '}' of an object
+   */
+  void onObjectEnd();
+
+  /**
+   * Called on '[' of an array
+   */
+  void onArrayStart();
+
+  /**
+   * Called on ']' of an array
+   */
+  void onArrayEnd();
+
+  void onString(String value);
+
+  void onNumber(Number value);
+
+  void onBoolean(boolean value);
+
+  void onNull();
+
+  /**
+   * Called for undefined values including array holes (like in '[1,,3]')
+   */
+  void onUndefined();
+}
@@ -0,0 +1,64 @@
+package com.metarhia.jstp.core;
+
+/**
+ * Header of the JSTP message ({type: [number, 'interface'], name: ...})
+ * extracted without parsing the rest of the message.
+ *
+ * @see JSParser#peekHeader()
+ */
+public final class JSMessageHeader {
+
+  private final String type;
+
+  private final long number;
+
+  private final String interfaceName;
+
+  private final String name;
+
+  public JSMessageHeader(String type, long number, String interfaceName, String name) {
+    this.type = type;
+    this.number = number;
+    this.interfaceName = interfaceName;
+    this.name = name;
+  }
+
+  /**
+   * @return key of the first pair of the message (handshake, call, event etc.)
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * @return first element of the header array
+   */
+  public long getNumber() {
+    return number;
+  }
+
+  /**
+   * @return second element of the header array if it is a string and null otherwise
+   */
+  public String getInterfaceName() {
+    return interfaceName;
+  }
+
+  /**
+   * @return key of the second pair of the message (method name, event name,
+   *         ok, error etc.) or null if there is no such pair
+   */
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return "JSMessageHeader{"
+        + "type='" + type + '\''
+        + ", number=" + number
+        + ", interfaceName='" + interfaceName + '\''
+        + ", name='" + name + '\''
+        + '}';
+  }
+}
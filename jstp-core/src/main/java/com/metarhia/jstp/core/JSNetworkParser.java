@@ -1,51 +1,90 @@
 package com.metarhia.jstp.core;
 
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Splits the stream of the UTF-8 encoded messages separated by '\0' into
+ * separate messages. Receive buffer is processed in a single pass: all of the
+ * complete messages are handled, then incomplete rest of the data is moved
+ * to the beginning of the buffer, so the buffer can be reused for the next read.
+ * <p>
  * Created by lundibundi on 2/19/17.
  */
 public final class JSNetworkParser {
 
   private static final byte TERMINATOR = '\0';
 
-  private static final Charset UTF_8_CHARSET = Charset.forName("UTF-8");
-
   private JSNetworkParser() {
   }
 
+  /**
+   * Parses all of the complete messages in the first {@code length[0]} bytes
+   * of the {@param msg} and moves the rest of the data to the beginning of the
+   * array, {@code length[0]} is set to the length of the rest
+   *
+   * @return parsed messages in order of their appearance
+   */
   public static List<JSObject> parse(byte[] msg, int[] length) throws JSParsingException {
-    List<JSObject> messages = new ArrayList<>();
-    JSParser parser = new JSParser();
+    final List<JSObject> messages = new ArrayList<>();
+    final JSParser parser = new JSParser();
     int chunkStart = 0;
-    int chunkLength = bytesUntil(msg, chunkStart, length[0], TERMINATOR);
-    while (chunkLength != -1 && chunkStart < length[0]) {
-      String messageData = new String(msg, chunkStart, chunkLength, UTF_8_CHARSET);
-      parser.setInput(messageData);
-      messages.add(parser.parseObject());
-      chunkStart += chunkLength;
-      chunkLength = bytesUntil(msg, chunkStart, length[0], TERMINATOR);
-    }
-    int restLength = length[0] - chunkStart;
-    if (restLength > 0) {
-      System.arraycopy(msg, chunkStart, msg, 0, restLength);
-      length[0] = restLength;
-    } else {
-      length[0] = 0;
+    int terminator;
+    try {
+      while ((terminator = Utils.indexOf(msg, TERMINATOR, chunkStart, length[0])) != -1) {
+        if (terminator != chunkStart) {
+          parser.setInput(msg, chunkStart, terminator - chunkStart);
+          messages.add(parser.parseObject());
+        }
+        chunkStart = terminator + 1;
+      }
+    } finally {
+      parser.clearInput();
     }
+    length[0] = compact(msg, chunkStart, length[0]);
     return messages;
   }
 
-  private static int bytesUntil(byte[] bytes, int offset, int length, byte until) {
-    int counter = 0;
-    for (int i = offset; i < length; i++) {
-      if (bytes[counter++] == until) {
-        return counter;
+  /**
+   * Calls {@param listener} for every complete non-empty message in range
+   * [{@param offset}, {@param offset} + {@param length}) of the {@param buffer}
+   * (terminators are not included in the messages)
+   *
+   * @return number of the bytes consumed (up to and including the last terminator)
+   */
+  public static int split(byte[] buffer, int offset, int length, FrameListener listener) {
+    final int max = offset + length;
+    int chunkStart = offset;
+    int terminator;
+    while ((terminator = Utils.indexOf(buffer, TERMINATOR, chunkStart, max)) != -1) {
+      if (terminator != chunkStart) {
+        listener.onFrame(buffer, chunkStart, terminator - chunkStart);
       }
+      chunkStart = terminator + 1;
     }
-    return -1;
+    return chunkStart - offset;
+  }
+
+  /**
+   * Moves bytes in range [{@param consumed}, {@param length}) of the {@param buffer}
+   * to its beginning
+   *
+   * @return number of the bytes left in the buffer
+   */
+  public static int compact(byte[] buffer, int consumed, int length) {
+    final int restLength = length - consumed;
+    if (restLength > 0 && consumed > 0) {
+      System.arraycopy(buffer, consumed, buffer, 0, restLength);
+    }
+    return Math.max(restLength, 0);
+  }
+
+  /**
+   * Listener of the messages found by {@link #split(byte[], int, int, FrameListener)}
+   */
+  public interface FrameListener {
+
+    void onFrame(byte[] buffer, int offset, int length);
   }
 }
@@ -0,0 +1,212 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.JSInterfaces.JSContainerFactory;
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parser that splits parsing of the large arrays between the threads of
+ * {@link ForkJoinPool}. Input is indexed first (see {@link JSTape}), so that
+ * element boundaries are known, then elements of every array that has at least
+ * {@link #getMinParallelSize()} of them are parsed in chunks concurrently and
+ * stored in order. Objects and small arrays that contain no large arrays are
+ * parsed by a regular {@link JSParser}.
+ * <p>
+ * It only pays off for really big inputs (e.g. arrays of 100k elements),
+ * smaller ones should be parsed with {@link JSParser} directly.
+ */
+public class JSParallelParser {
+
+  public static final int DEFAULT_MIN_PARALLEL_SIZE = 4096;
+
+  /**
+   * Min number of elements parsed by a single task
+   */
+  private static final int MIN_CHUNK_SIZE = 512;
+
+  private final ForkJoinPool pool;
+
+  private final int minParallelSize;
+
+  private JSContainerFactory containerFactory = DefaultJSContainerFactory.get();
+
+  /**
+   * Creates parser that uses shared pool with parallelism equal to the number of processors
+   */
+  public JSParallelParser() {
+    this(DefaultPool.POOL, DEFAULT_MIN_PARALLEL_SIZE);
+  }
+
+  /**
+   * @param pool            pool to parse elements of the arrays in
+   * @param minParallelSize min number of elements of the array to be parsed in parallel
+   */
+  public JSParallelParser(ForkJoinPool pool, int minParallelSize) {
+    this.pool = pool;
+    this.minParallelSize = Math.max(minParallelSize, 1);
+  }
+
+  public <T> T parse(String input) throws JSParsingException {
+    return parse(JSTape.build(input));
+  }
+
+  public <T> T parse(char[] input, int offset, int length) throws JSParsingException {
+    return parse(JSTape.build(input, offset, length));
+  }
+
+  /**
+   * Parses UTF-8 encoded {@param input}
+   */
+  public <T> T parse(byte[] input, int offset, int length) throws JSParsingException {
+    return parse(JSTape.build(input, offset, length));
+  }
+
+  public <T> T parse(JSTape tape) throws JSParsingException {
+    final JSParser parser = new JSParser();
+    parser.setContainerFactory(containerFactory);
+    return (T) parseValue(tape, 0, 0, parser);
+  }
+
+  public int getMinParallelSize() {
+    return minParallelSize;
+  }
+
+  public JSContainerFactory getContainerFactory() {
+    return containerFactory;
+  }
+
+  /**
+   * @param containerFactory factory used to create objects and arrays, it must be
+   *                         thread-safe as it is called from the threads of the pool
+   */
+  public void setContainerFactory(JSContainerFactory containerFactory) {
+    this.containerFactory = containerFactory;
+  }
+
+  private Object parseValue(JSTape tape, int entry, int depth, JSParser parser)
+      throws JSParsingException {
+    final int type = tape.getType(entry);
+    if ((type == JSTape.TYPE_OBJECT || type == JSTape.TYPE_ARRAY)
+        && tape.getEndEntry(entry) - entry > minParallelSize) {
+      // there may be a large array inside
+      return type == JSTape.TYPE_OBJECT
+          ? parseObject(tape, entry, depth, parser)
+          : parseArray(tape, entry, depth, parser);
+    }
+    return tape.getValue(entry, parser);
+  }
+
+  private JSObject parseObject(JSTape tape, int entry, int depth, JSParser parser)
+      throws JSParsingException {
+    final JSObject object = containerFactory.newObject(depth, tape.getSize(entry));
+    final int end = tape.getEndEntry(entry);
+    for (int key = entry + 1; key < end; key = tape.getNextEntry(key)) {
+      // keys are decoded by the parser's tokenizer as the tape's own one isn't thread-safe
+      final String name = tape.getString(key, parser.getTokenizer());
+      object.put(name, parseValue(tape, key + 1, depth + 1, parser));
+    }
+    return object;
+  }
+
+  private List parseArray(JSTape tape, int entry, int depth, JSParser parser)
+      throws JSParsingException {
+    final int size = tape.getSize(entry);
+    final int[] elements = new int[size];
+    for (int i = 0, element = entry + 1; i < size; i++, element = tape.getNextEntry(element)) {
+      elements[i] = element;
+    }
+    final Object[] values = new Object[size];
+    if (size < minParallelSize) {
+      for (int i = 0; i < size; i++) {
+        values[i] = parseValue(tape, elements[i], depth + 1, parser);
+      }
+    } else {
+      final int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4));
+      final ParseTask task = new ParseTask(tape, elements, values, 0, size, depth + 1, chunkSize);
+      try {
+        if (ForkJoinTask.inForkJoinPool()) {
+          task.invoke();
+        } else {
+          pool.invoke(task);
+        }
+      } catch (RuntimeException e) {
+        throw unwrap(e);
+      }
+    }
+    final List array = containerFactory.newArray(depth, size);
+    array.addAll(Arrays.asList(values));
+    return array;
+  }
+
+  /**
+   * @return parsing exception that caused {@param e} or {@param e} itself if there is none
+   */
+  private static RuntimeException unwrap(RuntimeException e) throws JSParsingException {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof JSParsingException) {
+        throw (JSParsingException) cause;
+      }
+    }
+    return e;
+  }
+
+  /**
+   * Parses range of the elements of the array splitting it in halves until
+   * it is not greater than the chunk size
+   */
+  private class ParseTask extends RecursiveAction {
+
+    private final JSTape tape;
+
+    private final int[] elements;
+
+    private final Object[] values;
+
+    private final int from;
+
+    private final int to;
+
+    private final int depth;
+
+    private final int chunkSize;
+
+    ParseTask(JSTape tape, int[] elements, Object[] values, int from, int to, int depth,
+              int chunkSize) {
+      this.tape = tape;
+      this.elements = elements;
+      this.values = values;
+      this.from = from;
+      this.to = to;
+      this.depth = depth;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > chunkSize) {
+        final int middle = (from + to) >>> 1;
+        invokeAll(new ParseTask(tape, elements, values, from, middle, depth, chunkSize),
+            new ParseTask(tape, elements, values, middle, to, depth, chunkSize));
+        return;
+      }
+      final JSParser parser = new JSParser();
+      parser.setContainerFactory(containerFactory);
+      try {
+        for (int i = from; i < to; i++) {
+          values[i] = parseValue(tape, elements[i], depth, parser);
+        }
+      } catch (JSParsingException e) {
+        throw new RuntimeException("Cannot parse array element", e);
+      }
+    }
+  }
+
+  private static final class DefaultPool {
+
+    static final ForkJoinPool POOL = new ForkJoinPool();
+  }
+}
@@ -1,13 +1,18 @@
 package com.metarhia.jstp.core;
 
-import com.metarhia.jstp.core.JSTypes.IndexedHashMap;
 import com.metarhia.jstp.core.JSTypes.JSEntry;
+import com.metarhia.jstp.core.JSInterfaces.JSContainerFactory;
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSInterfaces.JSVisitor;
+import com.metarhia.jstp.core.JSTypes.JSNumberArray;
+import com.metarhia.jstp.core.JSTypes.JSStringSlice;
 import com.metarhia.jstp.core.JSTypes.JSUndefined;
+import com.metarhia.jstp.core.JSTypes.LazyJSObject;
+import com.metarhia.jstp.core.Tokens.StringCache;
 import com.metarhia.jstp.core.Tokens.Token;
 import com.metarhia.jstp.core.Tokens.Tokenizer;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -16,31 +21,254 @@ import java.util.Set;
 
 public class JSParser implements Serializable {
 
-  public final String DEFAULT_PARSE_ERROR_MSG = "Cannot parse";
+  public static final String DEFAULT_PARSE_ERROR_MSG = "Cannot parse";
+
+  /**
+   * Input is always parsed with the full JSTP grammar
+   */
+  public static final int JSON_MODE_OFF = 0;
+
+  /**
+   * Input is parsed as strict JSON first, see {@link #setJsonMode(int)}
+   */
+  public static final int JSON_MODE_ON = 1;
+
+  /**
+   * Input is parsed as strict JSON first if its first characters look like
+   * JSON (see {@link Tokenizer#looksLikeJson()})
+   */
+  public static final int JSON_MODE_AUTO = 2;
+
+  /**
+   * Marker returned by the strict JSON methods when the input is not strict JSON
+   */
+  private static final Object NOT_JSON = new Object();
+
+  /**
+   * Parser reused by the static methods of this class, so that they don't
+   * allocate new parser for every call
+   */
+  private static final ThreadLocal<JSParser> threadParser = new ThreadLocal<JSParser>() {
+    @Override
+    protected JSParser initialValue() {
+      return new JSParser();
+    }
+  };
 
   public static <T> T parse(String input) throws JSParsingException {
-    return new JSParser(input).parse();
+    final JSParser parser = threadParser.get();
+    parser.setInput(input);
+    try {
+      return parser.parse();
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  public static <T> T parse(byte[] input, int offset, int length) throws JSParsingException {
+    final JSParser parser = threadParser.get();
+    parser.setInput(input, offset, length);
+    try {
+      return parser.parse();
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * Parses {@param input} as {@link LazyJSObject}
+   */
+  public static <T> LazyJSObject<T> parseLazyObject(String input) throws JSParsingException {
+    final char[] chars = input.toCharArray();
+    return new LazyJSObject<>(chars, 0, chars.length);
+  }
+
+  /**
+   * Parses UTF-8 encoded {@param input} as {@link LazyJSObject}, the array is used
+   * to parse values on demand, so it must not be modified while the object is in use
+   */
+  public static <T> LazyJSObject<T> parseLazyObject(byte[] input, int offset, int length)
+      throws JSParsingException {
+    return new LazyJSObject<>(input, offset, length);
+  }
+
+  /**
+   * @see #peekHeader()
+   */
+  public static JSMessageHeader peekHeader(String input) throws JSParsingException {
+    final JSParser parser = threadParser.get();
+    parser.setInput(input);
+    try {
+      return parser.peekHeader();
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * @see #peekHeader()
+   */
+  public static JSMessageHeader peekHeader(byte[] input, int offset, int length)
+      throws JSParsingException {
+    final JSParser parser = threadParser.get();
+    parser.setInput(input, offset, length);
+    try {
+      return parser.peekHeader();
+    } finally {
+      parser.clearInput();
+    }
   }
 
   private Tokenizer tokenizer;
 
-  private Class<? extends JSObject> jsObjectClass = IndexedHashMap.class;
+  private JSContainerFactory containerFactory = DefaultJSContainerFactory.get();
 
-  private Class<? extends List> jsArrayClass = ArrayList.class;
+  private boolean numberArrays;
+
+  private int jsonMode = JSON_MODE_OFF;
+
+  /**
+   * Nesting depth of the container being parsed
+   */
+  private int depth;
+
+  /**
+   * Sizes of the last containers parsed at every depth
+   */
+  private int[] sizeHints = new int[8];
 
   public JSParser() {
-    tokenizer = new Tokenizer("");
+    tokenizer = new Tokenizer();
   }
 
   public JSParser(String input) {
     tokenizer = new Tokenizer(input);
   }
 
+  /**
+   * Creates parser for UTF-8 encoded {@param input}
+   *
+   * @see Tokenizer#setInput(byte[], int, int)
+   */
+  public JSParser(byte[] input, int offset, int length) {
+    tokenizer = new Tokenizer(input, offset, length);
+  }
+
   public <T> T parse() throws JSParsingException {
+    if (jsonMode == JSON_MODE_ON || (jsonMode == JSON_MODE_AUTO && tokenizer.looksLikeJson())) {
+      final int start = tokenizer.getIndex();
+      final int startDepth = depth;
+      final Object value = parseJsonValue(tokenizer.nextJson());
+      if (value != NOT_JSON) {
+        return (T) value;
+      }
+      // fall back to the full grammar
+      depth = startDepth;
+      tokenizer.setIndex(start);
+    }
     tokenizer.next();
     return parseInternal();
   }
 
+  /**
+   * Parses strict JSON value starting with the {@param token}
+   *
+   * @return parsed value or {@link #NOT_JSON} if the value is not strict JSON
+   *         (the position of the tokenizer is undefined then)
+   */
+  private Object parseJsonValue(Token token) throws JSParsingException {
+    switch (token) {
+      case STRING:
+        return tokenizer.getCharSequence();
+      case NUMBER:
+        return tokenizer.getNumber();
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case NULL:
+        return null;
+      case CURLY_OPEN:
+        return parseJsonObject();
+      case SQ_OPEN:
+        return parseJsonArray();
+      default:
+        return NOT_JSON;
+    }
+  }
+
+  private Object parseJsonObject() throws JSParsingException {
+    final int objectDepth = enterContainer();
+    final JSObject<Object> hash = containerFactory.newObject(objectDepth, sizeHints[objectDepth]);
+    Token token = tokenizer.nextJsonKey();
+    if (token != Token.CURLY_CLOSE) {
+      while (true) {
+        if (token != Token.STRING) {
+          return NOT_JSON;
+        }
+        final String key = tokenizer.getStr();
+        if (tokenizer.nextJson() != Token.COLON) {
+          return NOT_JSON;
+        }
+        final Object value = parseJsonValue(tokenizer.nextJson());
+        if (value == NOT_JSON) {
+          return NOT_JSON;
+        }
+        hash.put(key, value);
+        token = tokenizer.nextJson();
+        if (token == Token.CURLY_CLOSE) {
+          break;
+        } else if (token != Token.COMMA) {
+          return NOT_JSON;
+        }
+        token = tokenizer.nextJsonKey();
+      }
+    }
+    exitContainer(objectDepth, hash.size());
+    return hash;
+  }
+
+  private Object parseJsonArray() throws JSParsingException {
+    final int arrayDepth = enterContainer();
+    final int sizeHint = sizeHints[arrayDepth];
+    Token token = tokenizer.nextJson();
+    JSNumberArray numbers = null;
+    final int numbersStart = tokenizer.getPrevIndex();
+    if (numberArrays && token == Token.NUMBER) {
+      numbers = parseNumbers(sizeHint);
+      if (tokenizer.getLastToken() == Token.SQ_CLOSE) {
+        exitContainer(arrayDepth, numbers.size());
+        return numbers;
+      }
+      // the first element that is not a number
+      token = tokenizer.getLastToken();
+    }
+
+    final List<Object> array = containerFactory.newArray(arrayDepth, sizeHint);
+    if (numbers != null) {
+      addNumbers(array, numbers, numbersStart);
+    } else if (token == Token.SQ_CLOSE) {
+      exitContainer(arrayDepth, 0);
+      return array;
+    }
+    while (true) {
+      final Object value = parseJsonValue(token);
+      if (value == NOT_JSON) {
+        return NOT_JSON;
+      }
+      array.add(value);
+      token = tokenizer.nextJson();
+      if (token == Token.SQ_CLOSE) {
+        break;
+      } else if (token != Token.COMMA) {
+        return NOT_JSON;
+      }
+      token = tokenizer.nextJson();
+    }
+    exitContainer(arrayDepth, array.size());
+    return array;
+  }
+
   public <T> T parseInternal() throws JSParsingException {
     switch (tokenizer.getLastToken()) {
       case TRUE:
@@ -48,7 +276,7 @@ public class JSParser implements Serializable {
       case FALSE:
         return (T) Boolean.FALSE;
       case STRING:
-        return (T) tokenizer.getStr();
+        return (T) tokenizer.getCharSequence();
       case CURLY_OPEN:
         return (T) parseObjectInternal();
       case SQ_OPEN:
@@ -76,15 +304,29 @@ public class JSParser implements Serializable {
   }
 
   public <T> List<T> parseArrayInternal() throws JSParsingException {
-    List<T> array;
-    try {
-      array = jsArrayClass.newInstance();
-    } catch (InstantiationException | IllegalAccessException e) {
-      throw new RuntimeException("Failed to create instance of JS Array", e);
+    final int arrayDepth = enterContainer();
+    final int sizeHint = sizeHints[arrayDepth];
+    JSNumberArray numbers = null;
+    int numbersStart = 0;
+    if (numberArrays && tokenizer.next() == Token.NUMBER) {
+      numbersStart = tokenizer.getPrevIndex();
+      numbers = parseNumbers(sizeHint);
+      if (tokenizer.getLastToken() == Token.SQ_CLOSE) {
+        exitContainer(arrayDepth, numbers.size());
+        return (List<T>) numbers;
+      }
+    }
+
+    final List<T> array = containerFactory.newArray(arrayDepth, sizeHint);
+    if (numbers != null) {
+      addNumbers(array, numbers, numbersStart);
     }
 
+    // the first token is already read if number arrays are enabled
+    boolean pending = numberArrays;
     while (tokenizer.getLastToken() != Token.SQ_CLOSE
-        && tokenizer.next() != Token.SQ_CLOSE) {
+        && (pending || tokenizer.next() != Token.SQ_CLOSE)) {
+      pending = false;
       if (tokenizer.getLastToken() == Token.COMMA) {
         array.add((T) JSUndefined.get());
       } else {
@@ -97,9 +339,59 @@ public class JSParser implements Serializable {
         }
       }
     }
+    exitContainer(arrayDepth, array.size());
     return array;
   }
 
+  /**
+   * Parses elements of the array starting with the current number token
+   * while they are numbers
+   *
+   * @return parsed numbers, if the last token is not ']' then it is the
+   *         next element of the array that is not a number
+   */
+  private JSNumberArray parseNumbers(int sizeHint) throws JSParsingException {
+    final JSNumberArray numbers = new JSNumberArray(Math.max(sizeHint, 1));
+    do {
+      if (tokenizer.isIntegerNumber()) {
+        numbers.addLong(tokenizer.getLongNumber());
+      } else {
+        numbers.addDouble(tokenizer.getDoubleNumber());
+      }
+      if (tokenizer.next() != Token.COMMA) {
+        if (tokenizer.getLastToken() != Token.SQ_CLOSE) {
+          throw new JSParsingException(tokenizer.getPrevIndex(),
+              "Expected ',' as separator of array elements");
+        }
+        return numbers;
+      }
+    } while (tokenizer.next() == Token.NUMBER);
+    return numbers;
+  }
+
+  /**
+   * Adds {@param numbers} parsed by {@link #parseNumbers(int)} to the {@param array}
+   * boxed the same way as by {@link #parseInternal()}. Integers can't be told apart
+   * once the storage is widened to double, so then the numbers are tokenized again
+   * starting at {@param start}, the last token is the same after the call.
+   */
+  private void addNumbers(List array, JSNumberArray numbers, int start)
+      throws JSParsingException {
+    if (numbers.getType() != JSNumberArray.TYPE_DOUBLE) {
+      array.addAll(numbers);
+      return;
+    }
+    tokenizer.setIndex(start);
+    for (int i = 0; i < numbers.size(); i++) {
+      tokenizer.next();
+      array.add(tokenizer.getNumber());
+      // skip comma
+      tokenizer.next();
+    }
+    // the first element that is not a number
+    tokenizer.next();
+  }
+
   public <T> JSObject<T> parseObject() throws JSParsingException {
     tokenizer.next();
     if (tokenizer.getLastToken() != Token.CURLY_OPEN) {
@@ -109,12 +401,8 @@ public class JSParser implements Serializable {
   }
 
   private <T> JSObject<T> parseObjectInternal() throws JSParsingException {
-    JSObject<T> hash;
-    try {
-      hash = jsObjectClass.newInstance();
-    } catch (InstantiationException | IllegalAccessException e) {
-      throw new RuntimeException("Failed to create instance of JS Object", e);
-    }
+    final int objectDepth = enterContainer();
+    final JSObject<T> hash = containerFactory.newObject(objectDepth, sizeHints[objectDepth]);
 
     while (tokenizer.getLastToken() != Token.CURLY_CLOSE
         && tokenizer.next() != Token.CURLY_CLOSE) {
@@ -126,9 +414,26 @@ public class JSParser implements Serializable {
             "Expected ',' as key-value pairs separator");
       }
     }
+    exitContainer(objectDepth, hash.size());
     return hash;
   }
 
+  /**
+   * @return depth of the container being entered
+   */
+  private int enterContainer() {
+    final int containerDepth = depth++;
+    if (containerDepth == sizeHints.length) {
+      sizeHints = Arrays.copyOf(sizeHints, containerDepth * 2);
+    }
+    return containerDepth;
+  }
+
+  private void exitContainer(int containerDepth, int size) {
+    sizeHints[containerDepth] = size;
+    depth = containerDepth;
+  }
+
   public <T> JSEntry<T> parseKeyValuePair() throws JSParsingException {
     tokenizer.next();
     assureToken("Expected valid key",
@@ -163,6 +468,158 @@ public class JSParser implements Serializable {
     return new JSEntry<>(key, value);
   }
 
+  /**
+   * Reads only the header of the JSTP message ({type: [number, 'interface'], name: ...})
+   * and stops right after the key of the second pair, the rest of the message
+   * is neither parsed nor validated.
+   *
+   * @return message header or null if the message is an empty object (heartbeat)
+   */
+  public JSMessageHeader peekHeader() throws JSParsingException {
+    if (tokenizer.next() != Token.CURLY_OPEN) {
+      throw new JSParsingException(tokenizer.getPrevIndex(),
+          "Expected '{' at the beginning of JSObject");
+    }
+    if (tokenizer.next() == Token.CURLY_CLOSE) {
+      return null;
+    }
+    final String type = tokenizer.getStr();
+    if (type == null) {
+      throw new JSParsingException(tokenizer.getPrevIndex(), "Expected valid key");
+    }
+    if (tokenizer.next() != Token.COLON) {
+      throw new JSParsingException(tokenizer.getPrevIndex(),
+          "Expected ':' as separator of Key and Value");
+    }
+    if (tokenizer.next() != Token.SQ_OPEN) {
+      throw new JSParsingException(tokenizer.getPrevIndex(), "Expected header array");
+    }
+    if (tokenizer.next() != Token.NUMBER) {
+      throw new JSParsingException(tokenizer.getPrevIndex(), "Expected message number");
+    }
+    final long number = tokenizer.getNumber().longValue();
+
+    String interfaceName = null;
+    if (tokenizer.next() == Token.COMMA) {
+      final Token token = tokenizer.next();
+      if (token == Token.STRING) {
+        interfaceName = tokenizer.getStr();
+      } else if (token == Token.CURLY_OPEN || token == Token.SQ_OPEN) {
+        tokenizer.skipContainer();
+      }
+      if (token != Token.SQ_CLOSE) {
+        // skip the rest of the header
+        tokenizer.skipContainer();
+      }
+    } else if (tokenizer.getLastToken() != Token.SQ_CLOSE) {
+      throw new JSParsingException(tokenizer.getPrevIndex(),
+          "Expected ',' as separator of array elements");
+    }
+
+    String name = null;
+    if (tokenizer.next() == Token.COMMA && tokenizer.next() != Token.CURLY_CLOSE) {
+      name = tokenizer.getStr();
+    }
+    return new JSMessageHeader(type, number, interfaceName, name);
+  }
+
+  /**
+   * Parses the input reporting every value to {@param visitor} instead of
+   * building the resulting object
+   *
+   * @param visitor receiver of the parsing events
+   */
+  public void visit(JSVisitor visitor) throws JSParsingException {
+    tokenizer.next();
+    visitInternal(visitor);
+  }
+
+  private void visitInternal(JSVisitor visitor) throws JSParsingException {
+    switch (tokenizer.getLastToken()) {
+      case TRUE:
+        visitor.onBoolean(true);
+        break;
+      case FALSE:
+        visitor.onBoolean(false);
+        break;
+      case STRING:
+        visitor.onString(tokenizer.getStr());
+        break;
+      case CURLY_OPEN:
+        visitObjectInternal(visitor);
+        break;
+      case SQ_OPEN:
+        visitArrayInternal(visitor);
+        break;
+      case NUMBER:
+        visitor.onNumber(tokenizer.getNumber());
+        break;
+      case UNDEFINED:
+        visitor.onUndefined();
+        break;
+      case NULL:
+        visitor.onNull();
+        break;
+      case KEY:
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            tokenizer.getStr() + " is not defined");
+      default:
+        throw new JSParsingException(tokenizer.getPrevIndex(), DEFAULT_PARSE_ERROR_MSG);
+    }
+  }
+
+  private void visitArrayInternal(JSVisitor visitor) throws JSParsingException {
+    visitor.onArrayStart();
+    while (tokenizer.getLastToken() != Token.SQ_CLOSE
+        && tokenizer.next() != Token.SQ_CLOSE) {
+      if (tokenizer.getLastToken() == Token.COMMA) {
+        visitor.onUndefined();
+      } else {
+        visitInternal(visitor);
+        // skip comma
+        if (tokenizer.next() != Token.COMMA
+            && tokenizer.getLastToken() != Token.SQ_CLOSE) {
+          throw new JSParsingException(tokenizer.getPrevIndex(),
+              "Expected ',' as separator of array elements");
+        }
+      }
+    }
+    visitor.onArrayEnd();
+  }
+
+  private void visitObjectInternal(JSVisitor visitor) throws JSParsingException {
+    visitor.onObjectStart();
+    while (tokenizer.getLastToken() != Token.CURLY_CLOSE
+        && tokenizer.next() != Token.CURLY_CLOSE) {
+      String key = tokenizer.getStr();
+      if (key == null) {
+        throw new JSParsingException(tokenizer.getPrevIndex(), "Expected valid key");
+      }
+      if (tokenizer.next() != Token.COLON) {
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            "Expected ':' as separator of Key and Value");
+      }
+      visitor.onKey(key);
+      try {
+        tokenizer.next();
+        visitInternal(visitor);
+      } catch (JSParsingException e) {
+        if (!e.getErrMessage().equals(DEFAULT_PARSE_ERROR_MSG)) {
+          // just rethrow when this in not a default error
+          throw e;
+        }
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            "Expected value after ':' in object");
+      }
+      // skip comma
+      if (tokenizer.next() != Token.COMMA && tokenizer.getLastToken() != Token.CURLY_CLOSE) {
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            "Expected ',' as key-value pairs separator");
+      }
+    }
+    visitor.onObjectEnd();
+  }
+
   private void assureToken(String errorMsg, Set<Token> tokens) throws JSParsingException {
     if (!tokens.contains(tokenizer.getLastToken())) {
       throw new JSParsingException(tokenizer.getPrevIndex(), errorMsg);
@@ -170,22 +627,131 @@ public class JSParser implements Serializable {
   }
 
   public void setInput(String input) {
+    depth = 0;
+    tokenizer.setInput(input);
+  }
+
+  /**
+   * @see Tokenizer#setInput(char[], int, int)
+   */
+  public void setInput(char[] input, int offset, int length) {
+    depth = 0;
+    tokenizer.setInput(input, offset, length);
+  }
+
+  /**
+   * @see Tokenizer#setInput(byte[], int, int)
+   */
+  public void setInput(byte[] input, int offset, int length) {
+    depth = 0;
+    tokenizer.setInput(input, offset, length);
+  }
+
+  /**
+   * @see Tokenizer#setInput(ByteBuffer)
+   */
+  public void setInput(ByteBuffer input) {
+    depth = 0;
     tokenizer.setInput(input);
   }
 
-  public Class<? extends JSObject> getJsObjectClass() {
-    return jsObjectClass;
+  /**
+   * @see Tokenizer#setKeyCache(StringCache)
+   */
+  public void setKeyCache(StringCache keyCache) {
+    tokenizer.setKeyCache(keyCache);
+  }
+
+  public StringCache getKeyCache() {
+    return tokenizer.getKeyCache();
+  }
+
+  /**
+   * @see Tokenizer#setValueCache(StringCache)
+   */
+  public void setValueCache(StringCache valueCache) {
+    tokenizer.setValueCache(valueCache);
+  }
+
+  public StringCache getValueCache() {
+    return tokenizer.getValueCache();
+  }
+
+  /**
+   * If enabled, string values without escape sequences are returned as
+   * {@link JSStringSlice} that references the input array instead of String.
+   * Slices are only valid while the input array is not modified (e.g. during
+   * handling of the message parsed from it) and should be converted to Strings
+   * with {@link JSStringSlice#toString()} to be kept longer. Keys of the objects
+   * are always Strings.
+   *
+   * @param stringSlices true to enable slices, disabled by default
+   * @see Tokenizer#setStringSlices(boolean)
+   */
+  public void setStringSlices(boolean stringSlices) {
+    tokenizer.setStringSlices(stringSlices);
+  }
+
+  public boolean isStringSlices() {
+    return tokenizer.isStringSlices();
+  }
+
+  /**
+   * @see Tokenizer#clearInput()
+   */
+  public void clearInput() {
+    tokenizer.clearInput();
+  }
+
+  public Tokenizer getTokenizer() {
+    return tokenizer;
+  }
+
+  public boolean isNumberArrays() {
+    return numberArrays;
+  }
+
+  /**
+   * If enabled, arrays consisting only of numbers are parsed as {@link JSNumberArray}
+   * that stores values without boxing. Integers in such arrays that also contain
+   * fractional numbers are returned as Doubles, elements of the other arrays
+   * are the same as with this mode disabled.
+   *
+   * @param numberArrays true to enable number arrays, disabled by default
+   */
+  public void setNumberArrays(boolean numberArrays) {
+    this.numberArrays = numberArrays;
+  }
+
+  public int getJsonMode() {
+    return jsonMode;
   }
 
-  public void setJsObjectClass(Class<? extends JSObject> jsObjectClass) {
-    this.jsObjectClass = jsObjectClass;
+  /**
+   * Sets the mode of the strict JSON fast path used by {@link #parse()}. Strict JSON
+   * (double quoted strings and keys, no undefined, comments, holes in arrays and
+   * other JSTP extensions) is parsed by a simpler state machine into the same
+   * types as the full grammar would give. Once the input turns out not to be
+   * strict JSON it is parsed again from the start with the full grammar,
+   * so this mode should only be enabled for mostly JSON inputs.
+   *
+   * @param jsonMode {@link #JSON_MODE_OFF} (default), {@link #JSON_MODE_ON}
+   *                 or {@link #JSON_MODE_AUTO}
+   */
+  public void setJsonMode(int jsonMode) {
+    this.jsonMode = jsonMode;
   }
 
-  public Class<? extends List> getJsArrayClass() {
-    return jsArrayClass;
+  public JSContainerFactory getContainerFactory() {
+    return containerFactory;
   }
 
-  public void setJsArrayClass(Class<? extends List> jsArrayClass) {
-    this.jsArrayClass = jsArrayClass;
+  /**
+   * Sets factory used to create objects and arrays
+   *
+   * @param containerFactory container factory, {@link DefaultJSContainerFactory} by default
+   */
+  public void setContainerFactory(JSContainerFactory containerFactory) {
+    this.containerFactory = containerFactory;
   }
 }
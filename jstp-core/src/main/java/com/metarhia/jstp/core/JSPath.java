@@ -0,0 +1,272 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.JSTypes.JSUndefined;
+import com.metarhia.jstp.core.Tokens.StringCache;
+import com.metarhia.jstp.core.Tokens.Token;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled path to the values inside of the serialized object, e.g.
+ * "ok[0].items[*].id". Path consists of keys separated by dots, indexes of
+ * array elements and [*] wildcards that match all of the elements of the array.
+ * <p>
+ * Path is evaluated directly over the input: only the values it matches are
+ * parsed, all other subtrees are skipped without materializing them.
+ * Compiled paths are immutable and can be shared between threads.
+ */
+public final class JSPath {
+
+  /**
+   * Index of the wildcard step
+   */
+  private static final int ANY_INDEX = -1;
+
+  private static final ThreadLocal<JSParser> threadParser = new ThreadLocal<JSParser>() {
+    @Override
+    protected JSParser initialValue() {
+      final JSParser parser = new JSParser();
+      parser.setKeyCache(new StringCache());
+      return parser;
+    }
+  };
+
+  private final String path;
+
+  /**
+   * Keys of the steps, null for the array steps
+   */
+  private final String[] keys;
+
+  /**
+   * Indexes of the array steps (or {@link #ANY_INDEX} for wildcards)
+   */
+  private final int[] indexes;
+
+  private JSPath(String path, String[] keys, int[] indexes) {
+    this.path = path;
+    this.keys = keys;
+    this.indexes = indexes;
+  }
+
+  /**
+   * @throws IllegalArgumentException if {@param path} is malformed
+   */
+  public static JSPath compile(String path) {
+    final List<String> keys = new ArrayList<>();
+    final List<Integer> indexes = new ArrayList<>();
+    final int length = path.length();
+    int i = 0;
+    while (i < length) {
+      final char ch = path.charAt(i);
+      if (ch == '[') {
+        final int close = path.indexOf(']', i);
+        if (close == -1) {
+          throw new IllegalArgumentException("Unmatched '[' at " + i + " in path: " + path);
+        }
+        keys.add(null);
+        indexes.add(parseIndex(path, i + 1, close));
+        i = close + 1;
+      } else {
+        if (ch == '.') {
+          if (keys.isEmpty()) {
+            throw new IllegalArgumentException("Empty key at " + i + " in path: " + path);
+          }
+          i++;
+        } else if (!keys.isEmpty()) {
+          throw new IllegalArgumentException("Expected '.' or '[' at " + i + " in path: " + path);
+        }
+        int end = i;
+        while (end < length && path.charAt(end) != '.' && path.charAt(end) != '[') {
+          end++;
+        }
+        if (end == i) {
+          throw new IllegalArgumentException("Empty key at " + i + " in path: " + path);
+        }
+        keys.add(path.substring(i, end));
+        indexes.add(0);
+        i = end;
+      }
+    }
+    if (keys.isEmpty()) {
+      throw new IllegalArgumentException("Path is empty");
+    }
+    final int[] indexArray = new int[indexes.size()];
+    for (int j = 0; j < indexArray.length; j++) {
+      indexArray[j] = indexes.get(j);
+    }
+    return new JSPath(path, keys.toArray(new String[keys.size()]), indexArray);
+  }
+
+  /**
+   * @return all of the values matched by this path in the order of their
+   *         appearance in the {@param input}
+   */
+  public <T> List<T> evaluate(String input) throws JSParsingException {
+    final JSParser parser = threadParser.get();
+    parser.setInput(input);
+    try {
+      return evaluate(parser);
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * @see #evaluate(String)
+   */
+  public <T> List<T> evaluate(byte[] input, int offset, int length) throws JSParsingException {
+    final JSParser parser = threadParser.get();
+    parser.setInput(input, offset, length);
+    try {
+      return evaluate(parser);
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * Evaluates path over the value starting with the next token of the {@param parser}
+   */
+  public <T> List<T> evaluate(JSParser parser) throws JSParsingException {
+    final List<T> result = new ArrayList<>();
+    parser.getTokenizer().next();
+    match(parser, 0, result);
+    return result;
+  }
+
+  /**
+   * Matches the value starting with the last token against the path starting
+   * at {@param step}, the value is consumed whether it is matched or not
+   */
+  private <T> void match(JSParser parser, int step, List<T> result) throws JSParsingException {
+    if (step == keys.length) {
+      result.add((T) parser.parseInternal());
+      return;
+    }
+    final Tokenizer tokenizer = parser.getTokenizer();
+    final Token token = tokenizer.getLastToken();
+    if (keys[step] != null) {
+      if (token == Token.CURLY_OPEN) {
+        matchObject(parser, step, result);
+      } else {
+        skipValue(tokenizer);
+      }
+    } else {
+      if (token == Token.SQ_OPEN) {
+        matchArray(parser, step, result);
+      } else {
+        skipValue(tokenizer);
+      }
+    }
+  }
+
+  private <T> void matchObject(JSParser parser, int step, List<T> result)
+      throws JSParsingException {
+    final Tokenizer tokenizer = parser.getTokenizer();
+    final String key = keys[step];
+    while (tokenizer.next() != Token.CURLY_CLOSE) {
+      final String currentKey = tokenizer.getStr();
+      if (currentKey == null) {
+        throw new JSParsingException(tokenizer.getPrevIndex(), "Expected valid key");
+      }
+      if (tokenizer.next() != Token.COLON) {
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            "Expected ':' as separator of Key and Value");
+      }
+      tokenizer.next();
+      if (key.equals(currentKey)) {
+        match(parser, step + 1, result);
+      } else {
+        skipValue(tokenizer);
+      }
+      if (tokenizer.next() != Token.COMMA) {
+        if (tokenizer.getLastToken() != Token.CURLY_CLOSE) {
+          throw new JSParsingException(tokenizer.getPrevIndex(),
+              "Expected ',' as key-value pairs separator");
+        }
+        return;
+      }
+    }
+  }
+
+  private <T> void matchArray(JSParser parser, int step, List<T> result)
+      throws JSParsingException {
+    final Tokenizer tokenizer = parser.getTokenizer();
+    final int index = indexes[step];
+    final boolean last = step + 1 == keys.length;
+    int current = 0;
+    while (tokenizer.next() != Token.SQ_CLOSE) {
+      final boolean matched = index == ANY_INDEX || index == current;
+      if (tokenizer.getLastToken() == Token.COMMA) {
+        // hole in the array
+        if (matched && last) {
+          result.add((T) JSUndefined.get());
+        }
+      } else {
+        if (matched) {
+          match(parser, step + 1, result);
+        } else {
+          skipValue(tokenizer);
+        }
+        if (tokenizer.next() != Token.COMMA) {
+          if (tokenizer.getLastToken() != Token.SQ_CLOSE) {
+            throw new JSParsingException(tokenizer.getPrevIndex(),
+                "Expected ',' as separator of array elements");
+          }
+          return;
+        }
+      }
+      if (current++ == index) {
+        // nothing else can match
+        tokenizer.skipContainer();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Skips the value starting with the last token
+   */
+  private static void skipValue(Tokenizer tokenizer) throws JSParsingException {
+    switch (tokenizer.getLastToken()) {
+      case CURLY_OPEN:
+      case SQ_OPEN:
+        tokenizer.skipContainer();
+        break;
+      case STRING:
+      case NUMBER:
+      case TRUE:
+      case FALSE:
+      case NULL:
+      case UNDEFINED:
+        break;
+      case KEY:
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            tokenizer.getStr() + " is not defined");
+      default:
+        throw new JSParsingException(tokenizer.getPrevIndex(), JSParser.DEFAULT_PARSE_ERROR_MSG);
+    }
+  }
+
+  private static int parseIndex(String path, int from, int to) {
+    if (to - from == 1 && path.charAt(from) == '*') {
+      return ANY_INDEX;
+    }
+    try {
+      final int index = Integer.parseInt(path.substring(from, to));
+      if (index >= 0) {
+        return index;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid index at " + from + " in path: " + path);
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+}
@@ -0,0 +1,180 @@
+package com.metarhia.jstp.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader of the files of UTF-8 encoded records separated by '\0' or '\n'
+ * (e.g. written by {@link JSRecordWriter}). File is memory-mapped by windows
+ * and records are parsed one by one, only the current record is copied from
+ * the mapped memory into the heap buffer that is reused for all of the records.
+ * Empty records are skipped, so are '\r' before '\n' separators.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class JSRecordReader implements Closeable {
+
+  public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private final FileChannel channel;
+
+  private final JSParser parser = new JSParser();
+
+  private final int windowSize;
+
+  private MappedByteBuffer window;
+
+  /**
+   * Heap copy of the current record, it is kept for the whole life of the reader
+   * (unlike the buffers of the tokenizer) as records are usually of similar size
+   */
+  private byte[] recordBuffer = new byte[0];
+
+  /**
+   * Position of the window in the file
+   */
+  private long windowStart;
+
+  /**
+   * Position of the next record in the window
+   */
+  private int position;
+
+  /**
+   * Bounds of the next record in the window, {@link #recordStart} is -1
+   * if the next record wasn't found yet
+   */
+  private int recordStart = -1;
+
+  private int recordEnd;
+
+  private long recordOffset = -1;
+
+  public JSRecordReader(File file) throws IOException {
+    this(new FileInputStream(file).getChannel(), DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * @param channel    channel of the file to read records from, it is closed
+   *                   along with this reader
+   * @param windowSize size of the part of the file mapped at a time, it is
+   *                   extended if a record doesn't fit into it
+   */
+  public JSRecordReader(FileChannel channel, int windowSize) throws IOException {
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+    }
+    this.channel = channel;
+    this.windowSize = windowSize;
+    map(0, windowSize);
+  }
+
+  /**
+   * @return true if there is one more record in the file
+   */
+  public boolean hasNext() throws IOException {
+    while (recordStart == -1) {
+      final int separator = indexOfSeparator(position);
+      final boolean lastWindow = windowStart + window.limit() == channel.size();
+      if (separator == -1 && !lastWindow) {
+        // record doesn't fit into the window, map the next one starting from the record
+        final int mapped = window.limit() - position;
+        map(windowStart + position, mapped < windowSize / 2
+            ? windowSize : (int) Math.min(mapped * 2L, Integer.MAX_VALUE));
+        continue;
+      }
+      if (separator == -1 && position == window.limit()) {
+        return false;
+      }
+      int end = separator == -1 ? window.limit() : separator;
+      if (separator != -1 && window.get(separator) == '\n'
+          && end > position && window.get(end - 1) == '\r') {
+        end--;
+      }
+      if (end > position) {
+        recordStart = position;
+        recordEnd = end;
+      }
+      position = separator == -1 ? window.limit() : separator + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Parses next record of the file
+   *
+   * @throws NoSuchElementException if there are no more records
+   * @throws JSParsingException     if the record is invalid (offset is relative to
+   *                                the record, see {@link #getRecordOffset()}), the
+   *                                record is skipped anyway
+   * @see JSParser#setStringSlices(boolean) string slices of the record are only
+   *      valid until the next call
+   */
+  public <T> T next() throws IOException, JSParsingException {
+    if (!hasNext()) {
+      throw new NoSuchElementException("No more records");
+    }
+    final int length = recordEnd - recordStart;
+    if (recordBuffer.length < length) {
+      recordBuffer = new byte[Math.max(length, recordBuffer.length * 2)];
+    }
+    final MappedByteBuffer record = window;
+    record.position(recordStart);
+    record.get(recordBuffer, 0, length);
+    record.clear();
+    recordOffset = windowStart + recordStart;
+    recordStart = -1;
+    try {
+      parser.setInput(recordBuffer, 0, length);
+      return parser.parse();
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * @return position in the file of the record returned by the last {@link #next()}
+   *         call or -1 if there was none
+   */
+  public long getRecordOffset() {
+    return recordOffset;
+  }
+
+  /**
+   * @return parser used for the records, it can be configured (e.g. with
+   *         {@link JSParser#setContainerFactory}) before reading
+   */
+  public JSParser getParser() {
+    return parser;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+  private void map(long start, int size) throws IOException {
+    final long length = Math.min(size, channel.size() - start);
+    window = channel.map(MapMode.READ_ONLY, start, length);
+    windowStart = start;
+    position = 0;
+  }
+
+  private int indexOfSeparator(int from) {
+    final MappedByteBuffer buffer = window;
+    for (int i = from, limit = buffer.limit(); i < limit; i++) {
+      final byte b = buffer.get(i);
+      if (b == '\0' || b == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
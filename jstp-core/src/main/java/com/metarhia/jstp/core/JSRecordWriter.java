@@ -0,0 +1,93 @@
+package com.metarhia.jstp.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writer of the files of UTF-8 encoded records separated by {@link #SEPARATOR_NUL}
+ * or {@link #SEPARATOR_NEWLINE} that can be read by {@link JSRecordReader}.
+ * Records are serialized with the reusable {@link JSByteSerializer} and copied
+ * into the direct buffer of the channel, that is written out once it is full.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class JSRecordWriter implements Closeable, Flushable {
+
+  public static final char SEPARATOR_NUL = '\0';
+
+  public static final char SEPARATOR_NEWLINE = '\n';
+
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+
+  private final byte separator;
+
+  private final ByteBuffer buffer;
+
+  private final JSByteSerializer serializer = new JSByteSerializer();
+
+  public JSRecordWriter(File file, char separator) throws IOException {
+    this(new FileOutputStream(file).getChannel(), separator, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param channel    channel to write records to (starting from its current
+   *                   position), it is closed along with this writer
+   * @param separator  {@link #SEPARATOR_NUL} or {@link #SEPARATOR_NEWLINE}
+   * @param bufferSize size of the buffer records are encoded to
+   */
+  public JSRecordWriter(FileChannel channel, char separator, int bufferSize) {
+    if (separator != SEPARATOR_NUL && separator != SEPARATOR_NEWLINE) {
+      throw new IllegalArgumentException("Unsupported separator: " + (int) separator);
+    }
+    this.channel = channel;
+    this.separator = (byte) separator;
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  /**
+   * Serializes {@param value} as the next record (see {@link JSSerializer#stringify(Object)}),
+   * the record may stay in the buffer until {@link #flush()}
+   */
+  public void write(Object value) throws IOException {
+    final int length = serializer.serialize(value);
+    final byte[] bytes = serializer.getBuffer();
+    int offset = 0;
+    // records bigger than the buffer are written out in chunks
+    while (length - offset >= buffer.remaining()) {
+      final int chunk = buffer.remaining();
+      buffer.put(bytes, offset, chunk);
+      offset += chunk;
+      writeBuffer();
+    }
+    buffer.put(bytes, offset, length - offset).put(separator);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writeBuffer();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -1,6 +1,7 @@
 package com.metarhia.jstp.core;
 
 import com.metarhia.jstp.core.JSInterfaces.JSSerializable;
+import com.metarhia.jstp.core.JSTypes.JSNumberArray;
 import com.metarhia.jstp.core.JSTypes.JSUndefined;
 import java.util.Collection;
 import java.util.List;
@@ -13,8 +14,24 @@ import java.util.Queue;
  */
 public class JSSerializer {
 
+  private static final ThreadLocal<BuilderPool> threadBuilders = new ThreadLocal<BuilderPool>() {
+    @Override
+    protected BuilderPool initialValue() {
+      return new BuilderPool();
+    }
+  };
+
+  /**
+   * Serializes {@param input} using builder reused by the calling thread
+   */
   public static String stringify(Object input) {
-    return stringify(input, new StringBuilder(30)).toString();
+    final BuilderPool pool = threadBuilders.get();
+    final StringBuilder builder = pool.acquire();
+    try {
+      return stringify(input, builder).toString();
+    } finally {
+      pool.release(builder);
+    }
   }
 
   public static StringBuilder stringify(Object input, StringBuilder builder) {
@@ -45,16 +62,19 @@ public class JSSerializer {
   }
 
   public static StringBuilder stringifyArray(Collection input, StringBuilder builder) {
+    if (input instanceof JSNumberArray) {
+      return ((JSNumberArray) input).stringify(builder);
+    }
     builder.append('[');
-    if (input.size() != 0) {
-      for (Object value : input) {
-        stringify(value, builder).append(',');
+    boolean first = true;
+    for (Object value : input) {
+      if (!first) {
+        builder.append(',');
       }
-      builder.replace(builder.length() - 1, builder.length(), "]");
-    } else {
-      builder.append(']');
+      first = false;
+      stringify(value, builder);
     }
-    return builder;
+    return builder.append(']');
   }
 
   public static StringBuilder stringifyBool(Boolean value, StringBuilder builder) {
@@ -65,18 +85,17 @@ public class JSSerializer {
       Collection<T> object,
       StringBuilder builder) {
     builder.append('{');
-    if (!object.isEmpty()) {
-      for (Entry<?, ?> entry : object) {
-        keyFrom(entry.getKey(), builder);
-        builder.append(':');
-        stringify(entry.getValue(), builder);
+    boolean first = true;
+    for (Entry<?, ?> entry : object) {
+      if (!first) {
         builder.append(',');
       }
-      builder.replace(builder.length() - 1, builder.length(), "}");
-    } else {
-      builder.append('}');
+      first = false;
+      keyFrom(entry.getKey(), builder);
+      builder.append(':');
+      stringify(entry.getValue(), builder);
     }
-    return builder;
+    return builder.append('}');
   }
 
   public static String keyFrom(Object object) {
@@ -105,4 +124,50 @@ public class JSSerializer {
     }
     return builder;
   }
+
+  /**
+   * Builder reused by {@link #stringify(Object)} calls of a single thread. It keeps
+   * the capacity reached by the typical messages, so they are serialized without
+   * growing it, while the capacity reached by the rare huge messages is dropped.
+   * Nested calls (e.g. from {@link JSSerializable#stringify(StringBuilder)}) get
+   * new builders of the average message size.
+   */
+  private static final class BuilderPool {
+
+    private static final int MIN_CAPACITY = 32;
+
+    /**
+     * Max capacity of the builder that is kept regardless of the average size
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private StringBuilder builder = new StringBuilder(MIN_CAPACITY);
+
+    private boolean inUse;
+
+    /**
+     * Moving average of the serialized message sizes
+     */
+    private int averageSize = MIN_CAPACITY;
+
+    StringBuilder acquire() {
+      if (inUse) {
+        return new StringBuilder(averageSize);
+      }
+      inUse = true;
+      builder.setLength(0);
+      return builder;
+    }
+
+    void release(StringBuilder used) {
+      averageSize = Math.max(averageSize + ((used.length() - averageSize) >> 3), MIN_CAPACITY);
+      if (used != builder) {
+        return;
+      }
+      inUse = false;
+      if (builder.capacity() > MAX_RETAINED_CAPACITY && builder.capacity() > averageSize * 4) {
+        builder = new StringBuilder(averageSize * 2);
+      }
+    }
+  }
 }
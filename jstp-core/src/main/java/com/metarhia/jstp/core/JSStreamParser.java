@@ -0,0 +1,523 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.JSInterfaces.JSContainerFactory;
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSTypes.JSUndefined;
+import com.metarhia.jstp.core.Tokens.Token;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resumable parser for '\0'-terminated UTF-8 encoded JSTP messages that can be
+ * fed with arbitrary chunks of data as they arrive from the network.
+ * Tokens are consumed as soon as they are complete and parsing state is kept
+ * between {@link #feed(byte[], int, int)} calls, so by the time the terminator
+ * arrives the message is already parsed.
+ * <p>
+ * Every message must be a JSObject, any data after the end of the object and
+ * before the terminator is ignored (same as in {@link JSParser#parseObject()}).
+ * After a parsing error the rest of the message (up to the terminator) is dropped.
+ * <p>
+ * It is meant for the code that reads the stream on its own, TCPTransport splits
+ * the input into messages with {@link JSNetworkParser} instead and leaves the
+ * parsing to its MessageHandler.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class JSStreamParser {
+
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  private static final byte TERMINATOR = '\0';
+
+  private static final int EXPECT_KEY = 0;
+  private static final int EXPECT_COLON = 1;
+  private static final int EXPECT_VALUE = 2;
+  private static final int EXPECT_ELEMENT = 3;
+  private static final int EXPECT_SEPARATOR = 4;
+
+  private final Tokenizer tokenizer = new Tokenizer();
+
+  private final List<Frame> stack = new ArrayList<>();
+
+  private StreamListener listener;
+
+  private JSContainerFactory containerFactory = DefaultJSContainerFactory.get();
+
+  /**
+   * Sizes of the last containers parsed at every depth
+   */
+  private int[] sizeHints = new int[8];
+
+  private byte[] buffer;
+
+  /**
+   * View of the {@link #buffer} used to scan strings a word at a time
+   */
+  private ByteBuffer words;
+
+  /**
+   * Index of the first byte in the buffer that wasn't consumed yet
+   */
+  private int start;
+
+  /**
+   * Index right after the last buffered byte
+   */
+  private int limit;
+
+  /**
+   * Index the search for the next terminator should be started from
+   */
+  private int searchFrom;
+
+  /**
+   * Index of the beginning of the current message (may be negative if the buffer
+   * was compacted), used to report error offsets relative to the message
+   */
+  private int messageStart;
+
+  private JSObject message;
+
+  private boolean skipping;
+
+  /**
+   * Index of the opening quote of the string that is not complete yet or -1
+   */
+  private int openQuote = -1;
+
+  /**
+   * Index the search for the closing quote of the {@link #openQuote} string
+   * should be continued from, so that long strings are not rescanned with every chunk
+   */
+  private int openQuoteScanFrom;
+
+  public JSStreamParser(StreamListener listener) {
+    this(listener, DEFAULT_BUFFER_SIZE);
+  }
+
+  public JSStreamParser(StreamListener listener, int bufferSize) {
+    this.listener = listener;
+    this.buffer = new byte[bufferSize];
+  }
+
+  /**
+   * Feeds next chunk of data to the parser, {@link StreamListener} will be called
+   * for every message terminated in this chunk before this method returns.
+   * The chunk is copied so {@param chunk} can be reused right after the call.
+   *
+   * @param chunk  array containing UTF-8 encoded data
+   * @param offset index of the first byte of the data
+   * @param length number of bytes of the data
+   */
+  public void feed(byte[] chunk, int offset, int length) {
+    append(chunk, offset, length);
+
+    while (start < limit) {
+      final int terminator = Utils.indexOf(buffer, TERMINATOR, searchFrom, limit);
+      final boolean terminated = terminator != -1;
+      final int end = terminated ? terminator : limit;
+      searchFrom = end;
+
+      if (!skipping) {
+        try {
+          if (message == null) {
+            parseAvailable(terminated ? end : completeUtf8End(end), terminated);
+          } else {
+            // ignore everything after the end of the message
+            start = end;
+          }
+          if (terminated) {
+            finishMessage();
+          }
+        } catch (JSParsingException e) {
+          skipping = true;
+          listener.onParsingError(e);
+        }
+      }
+
+      if (!terminated) {
+        if (skipping) {
+          start = limit;
+        }
+        break;
+      }
+      start = searchFrom = terminator + 1;
+      messageStart = start;
+      skipping = false;
+      message = null;
+      openQuote = -1;
+      stack.clear();
+    }
+  }
+
+  /**
+   * Drops all of the buffered data and partially parsed message
+   */
+  public void reset() {
+    start = limit = searchFrom = messageStart = 0;
+    skipping = false;
+    message = null;
+    openQuote = -1;
+    stack.clear();
+  }
+
+  private void append(byte[] chunk, int offset, int length) {
+    if (limit + length > buffer.length) {
+      final int remaining = limit - start;
+      if (remaining + length > buffer.length) {
+        byte[] newBuffer = new byte[Math.max(buffer.length * 2, remaining + length)];
+        System.arraycopy(buffer, start, newBuffer, 0, remaining);
+        buffer = newBuffer;
+      } else {
+        System.arraycopy(buffer, start, buffer, 0, remaining);
+      }
+      messageStart -= start;
+      searchFrom -= start;
+      openQuote -= start;
+      openQuoteScanFrom -= start;
+      limit = remaining;
+      start = 0;
+    }
+    System.arraycopy(chunk, offset, buffer, limit, length);
+    limit += length;
+  }
+
+  /**
+   * Consumes all of the complete tokens before {@param end}. If the message is not
+   * {@param terminated} yet the last token may be continued in the next chunk so
+   * it is left to be parsed later.
+   */
+  private void parseAvailable(int end, boolean terminated) throws JSParsingException {
+    tokenizer.setInput(buffer, start, end - start);
+    final int length = end - start;
+    while (message == null) {
+      final int tokenStart = tokenizer.getIndex();
+      if (!terminated && !isStringComplete(start + tokenStart, end)) {
+        start += tokenStart;
+        return;
+      }
+      Token token;
+      try {
+        token = tokenizer.next();
+      } catch (JSParsingException e) {
+        if (!terminated) {
+          // most likely the token (e.g. escape sequence in identifier) is just
+          // not complete yet
+          start += tokenStart;
+          return;
+        }
+        throw new JSParsingException(start - messageStart + e.getErrorOffset(),
+            e.getErrMessage(), e.getCause());
+      }
+      if (!terminated && tokenizer.getIndex() == length && !isComplete(token)) {
+        start += tokenStart;
+        return;
+      }
+      if (token == Token.NONE) {
+        if (tokenizer.getIndex() == length) {
+          break;
+        }
+        throw error(JSParser.DEFAULT_PARSE_ERROR_MSG);
+      }
+      onToken(token);
+    }
+    start = end;
+  }
+
+  /**
+   * Checks whether the next token (starting at {@param from} after whitespace)
+   * is an incomplete string, search for its closing quote is continued from
+   * where the previous call stopped
+   *
+   * @return false if the next token is a string that is not closed before {@param end}
+   */
+  private boolean isStringComplete(int from, int end) {
+    int i = from;
+    while (i < end && isWhitespace(buffer[i])) {
+      i++;
+    }
+    if (i == end || buffer[i] != '\'' && buffer[i] != '"') {
+      return true;
+    }
+    final byte quote = buffer[i];
+    if (words == null || words.array() != buffer) {
+      words = Utils.wordView(buffer);
+    }
+    if (openQuote != i) {
+      openQuote = i;
+      openQuoteScanFrom = i + 1;
+    }
+    i = openQuoteScanFrom;
+    while ((i = Utils.indexOfAny(words, quote, (byte) '\\', i, end)) != -1) {
+      if (buffer[i] == quote) {
+        openQuote = -1;
+        return true;
+      }
+      if (i + 1 == end) {
+        // escaped character is not there yet
+        break;
+      }
+      i += 2;
+    }
+    openQuoteScanFrom = i == -1 ? end : i;
+    return false;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0b;
+  }
+
+  /**
+   * @return {@param end} moved back to the beginning of the last UTF-8 sequence
+   *         if that sequence is not complete yet
+   */
+  private int completeUtf8End(int end) {
+    for (int i = end - 1; i >= start && i >= end - 3; i--) {
+      final int b = buffer[i] & 0xff;
+      if (b < 0x80) {
+        return end;
+      } else if (b >= 0xc0) {
+        final int length = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : 2;
+        return i + length > end ? i : end;
+      }
+    }
+    return end;
+  }
+
+  private void finishMessage() throws JSParsingException {
+    if (message != null) {
+      listener.onMessageParsed(message);
+    } else if (!stack.isEmpty()) {
+      throw new JSParsingException(searchFrom - messageStart, "Unexpected end of message");
+    }
+  }
+
+  private static boolean isComplete(Token token) {
+    switch (token) {
+      case KEY:
+      case NUMBER:
+      case TRUE:
+      case FALSE:
+      case NULL:
+      case UNDEFINED:
+      case NONE:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  private void onToken(Token token) throws JSParsingException {
+    if (stack.isEmpty()) {
+      if (token != Token.CURLY_OPEN) {
+        throw error("Expected '{' at the beginning of JSObject");
+      }
+      stack.add(new Frame(newObject()));
+      return;
+    }
+
+    final Frame frame = stack.get(stack.size() - 1);
+    switch (frame.state) {
+      case EXPECT_KEY:
+        if (token == Token.CURLY_CLOSE) {
+          endValue();
+        } else if (isKey(token)) {
+          frame.key = tokenizer.getStr();
+          frame.state = EXPECT_COLON;
+        } else {
+          throw error("Expected valid key");
+        }
+        break;
+      case EXPECT_COLON:
+        if (token != Token.COLON) {
+          throw error("Expected ':' as separator of Key and Value");
+        }
+        frame.state = EXPECT_VALUE;
+        break;
+      case EXPECT_VALUE:
+        if (token == Token.KEY) {
+          throw error(tokenizer.getStr() + " is not defined");
+        } else if (!startValue(token)) {
+          throw error("Expected value after ':' in object");
+        }
+        break;
+      case EXPECT_ELEMENT:
+        if (token == Token.SQ_CLOSE) {
+          endValue();
+        } else if (token == Token.COMMA) {
+          frame.array.add(JSUndefined.get());
+        } else if (token == Token.KEY) {
+          throw error(tokenizer.getStr() + " is not defined");
+        } else if (!startValue(token)) {
+          throw error(JSParser.DEFAULT_PARSE_ERROR_MSG);
+        }
+        break;
+      case EXPECT_SEPARATOR:
+        if (token == Token.COMMA) {
+          frame.state = frame.object != null ? EXPECT_KEY : EXPECT_ELEMENT;
+        } else if (frame.object != null && token == Token.CURLY_CLOSE
+            || frame.array != null && token == Token.SQ_CLOSE) {
+          endValue();
+        } else if (frame.object != null) {
+          throw error("Expected ',' as key-value pairs separator");
+        } else {
+          throw error("Expected ',' as separator of array elements");
+        }
+        break;
+    }
+  }
+
+  /**
+   * @return false if {@param token} doesn't start a value
+   */
+  private boolean startValue(Token token) {
+    switch (token) {
+      case TRUE:
+        addValue(Boolean.TRUE);
+        return true;
+      case FALSE:
+        addValue(Boolean.FALSE);
+        return true;
+      case STRING:
+        addValue(tokenizer.getStr());
+        return true;
+      case NUMBER:
+        addValue(tokenizer.getNumber());
+        return true;
+      case UNDEFINED:
+        addValue(JSUndefined.get());
+        return true;
+      case NULL:
+        addValue(null);
+        return true;
+      case CURLY_OPEN:
+        stack.add(new Frame(newObject()));
+        return true;
+      case SQ_OPEN:
+        stack.add(new Frame(newArray()));
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void endValue() {
+    final Frame frame = stack.remove(stack.size() - 1);
+    final Object value = frame.object != null ? frame.object : frame.array;
+    sizeHints[stack.size()] = frame.object != null ? frame.object.size() : frame.array.size();
+    if (stack.isEmpty()) {
+      message = frame.object;
+    } else {
+      addValue(value);
+    }
+  }
+
+  private void addValue(Object value) {
+    final Frame frame = stack.get(stack.size() - 1);
+    if (frame.object != null) {
+      frame.object.put(frame.key, value);
+      frame.key = null;
+    } else {
+      frame.array.add(value);
+    }
+    frame.state = EXPECT_SEPARATOR;
+  }
+
+  private static boolean isKey(Token token) {
+    switch (token) {
+      case KEY:
+      case STRING:
+      case NUMBER:
+      case TRUE:
+      case FALSE:
+      case NULL:
+      case UNDEFINED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private JSParsingException error(String message) {
+    return new JSParsingException(start - messageStart + tokenizer.getPrevIndex(), message);
+  }
+
+  private JSObject newObject() {
+    return containerFactory.newObject(stack.size(), getSizeHint());
+  }
+
+  private List newArray() {
+    return containerFactory.newArray(stack.size(), getSizeHint());
+  }
+
+  private int getSizeHint() {
+    final int depth = stack.size();
+    if (depth >= sizeHints.length) {
+      sizeHints = Arrays.copyOf(sizeHints, depth * 2);
+    }
+    return sizeHints[depth];
+  }
+
+  public StreamListener getListener() {
+    return listener;
+  }
+
+  public void setListener(StreamListener listener) {
+    this.listener = listener;
+  }
+
+  public JSContainerFactory getContainerFactory() {
+    return containerFactory;
+  }
+
+  /**
+   * Sets factory used to create objects and arrays
+   *
+   * @param containerFactory container factory, {@link DefaultJSContainerFactory} by default
+   */
+  public void setContainerFactory(JSContainerFactory containerFactory) {
+    this.containerFactory = containerFactory;
+  }
+
+  private static class Frame {
+
+    JSObject object;
+    List array;
+    String key;
+    int state;
+
+    Frame(JSObject object) {
+      this.object = object;
+      this.state = EXPECT_KEY;
+    }
+
+    Frame(List array) {
+      this.array = array;
+      this.state = EXPECT_ELEMENT;
+    }
+  }
+
+  /**
+   * Stream parser events listener
+   */
+  public interface StreamListener {
+
+    /**
+     * Called when terminator of a successfully parsed message arrives
+     *
+     * @param message parsed message
+     */
+    void onMessageParsed(JSObject message);
+
+    /**
+     * Called when message cannot be parsed, the rest of this message will be skipped
+     *
+     * @param e parsing error
+     */
+    void onParsingError(JSParsingException e);
+  }
+}
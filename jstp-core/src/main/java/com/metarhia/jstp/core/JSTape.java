@@ -0,0 +1,491 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.JSTypes.JSUndefined;
+import com.metarhia.jstp.core.Tokens.Token;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import java.util.Arrays;
+
+/**
+ * Structural index ("tape") of the serialized value built by a single scan of the
+ * input without materializing any of the strings, numbers or containers.
+ * Every value, object key and container end is stored as a flat entry holding its
+ * type and offsets in the input, containers are linked to their ends so that whole
+ * subtrees can be skipped in O(1). Values are decoded on demand, usually while
+ * walking the tape with {@link JSTapeCursor}.
+ * <p>
+ * Input is used directly and must not be modified while the tape is in use.
+ * Decoding of the values reuses internal tokenizer and parser, so only methods
+ * that read the structure and the ones that take parser or tokenizer as an argument
+ * may be called concurrently.
+ */
+public final class JSTape {
+
+  /**
+   * Type returned for the positions past the last entry
+   */
+  public static final int TYPE_NONE = 0;
+
+  public static final int TYPE_OBJECT = 1;
+
+  public static final int TYPE_ARRAY = 2;
+
+  /**
+   * End of the object or array
+   */
+  public static final int TYPE_END = 3;
+
+  public static final int TYPE_KEY = 4;
+
+  public static final int TYPE_STRING = 5;
+
+  public static final int TYPE_NUMBER = 6;
+
+  public static final int TYPE_TRUE = 7;
+
+  public static final int TYPE_FALSE = 8;
+
+  public static final int TYPE_NULL = 9;
+
+  public static final int TYPE_UNDEFINED = 10;
+
+  /**
+   * Every entry is stored as type, start offset and either end offset (for scalars),
+   * index of the end entry (for objects and arrays) or number of elements (for ends)
+   */
+  private static final int ENTRY_SIZE = 3;
+
+  private static final int MIN_CAPACITY = 16;
+
+  private final char[] chars;
+
+  private final byte[] bytes;
+
+  private final int offset;
+
+  private int[] entries;
+
+  private int entryCount;
+
+  private Tokenizer valueTokenizer;
+
+  private JSParser valueParser;
+
+  private JSTape(char[] chars, byte[] bytes, int offset, int length) {
+    this.chars = chars;
+    this.bytes = bytes;
+    this.offset = offset;
+    this.entries = new int[ENTRY_SIZE * Math.max(MIN_CAPACITY, length / 8)];
+  }
+
+  public static JSTape build(String input) throws JSParsingException {
+    final char[] chars = input.toCharArray();
+    return build(chars, 0, chars.length);
+  }
+
+  public static JSTape build(char[] input, int offset, int length) throws JSParsingException {
+    final JSTape tape = new JSTape(input, null, offset, length);
+    final Tokenizer tokenizer = new Tokenizer();
+    tokenizer.setInput(input, offset, length);
+    tape.index(tokenizer);
+    return tape;
+  }
+
+  /**
+   * Builds tape of the UTF-8 encoded {@param input}
+   */
+  public static JSTape build(byte[] input, int offset, int length) throws JSParsingException {
+    final JSTape tape = new JSTape(null, input, offset, length);
+    final Tokenizer tokenizer = new Tokenizer();
+    tokenizer.setInput(input, offset, length);
+    tape.index(tokenizer);
+    return tape;
+  }
+
+  /**
+   * @return new cursor positioned at the root value
+   */
+  public JSTapeCursor cursor() {
+    return new JSTapeCursor(this);
+  }
+
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * @return type of the {@param entry} or {@link #TYPE_NONE} if it is past the last one
+   */
+  public int getType(int entry) {
+    if (entry < 0 || entry >= entryCount) {
+      return TYPE_NONE;
+    }
+    return entries[entry * ENTRY_SIZE];
+  }
+
+  /**
+   * @return offset of the {@param entry} in the input relative to its beginning
+   */
+  public int getOffset(int entry) {
+    checkEntry(entry);
+    return entries[entry * ENTRY_SIZE + 1];
+  }
+
+  /**
+   * @return number of elements of the array or key-value pairs of the object
+   *         that starts at {@param entry}
+   */
+  public int getSize(int entry) {
+    checkContainer(entry);
+    return entries[getEndEntry(entry) * ENTRY_SIZE + 2];
+  }
+
+  /**
+   * @return index of the entry that ends the object or array starting at {@param entry}
+   */
+  public int getEndEntry(int entry) {
+    checkContainer(entry);
+    return entries[entry * ENTRY_SIZE + 2];
+  }
+
+  /**
+   * @return index of the entry that follows the value starting at {@param entry},
+   *         for the keys the value of the key is skipped too
+   */
+  public int getNextEntry(int entry) {
+    switch (getType(entry)) {
+      case TYPE_OBJECT:
+      case TYPE_ARRAY:
+        return getEndEntry(entry) + 1;
+      case TYPE_KEY:
+        return getNextEntry(entry + 1);
+      case TYPE_END:
+      case TYPE_NONE:
+        throw new IllegalStateException("No value at entry " + entry);
+      default:
+        return entry + 1;
+    }
+  }
+
+  /**
+   * @return value of the string or key at {@param entry}
+   */
+  public String getString(int entry) throws JSParsingException {
+    if (valueTokenizer == null) {
+      valueTokenizer = new Tokenizer();
+    }
+    return getString(entry, valueTokenizer);
+  }
+
+  /**
+   * Same as {@link #getString(int)} but decodes the value with {@param tokenizer},
+   * so that values can be decoded concurrently (each thread must use its own tokenizer)
+   */
+  public String getString(int entry, Tokenizer tokenizer) throws JSParsingException {
+    final int type = getType(entry);
+    if (type != TYPE_STRING && type != TYPE_KEY) {
+      throw unexpectedType(entry, "string");
+    }
+    try {
+      return tokenize(entry, tokenizer).getStr();
+    } finally {
+      tokenizer.clearInput();
+    }
+  }
+
+  public Number getNumber(int entry) throws JSParsingException {
+    if (valueTokenizer == null) {
+      valueTokenizer = new Tokenizer();
+    }
+    return getNumber(entry, valueTokenizer);
+  }
+
+  /**
+   * Same as {@link #getNumber(int)} but decodes the value with {@param tokenizer},
+   * so that values can be decoded concurrently (each thread must use its own tokenizer)
+   */
+  public Number getNumber(int entry, Tokenizer tokenizer) throws JSParsingException {
+    if (getType(entry) != TYPE_NUMBER) {
+      throw unexpectedType(entry, "number");
+    }
+    try {
+      return tokenize(entry, tokenizer).getNumber();
+    } finally {
+      tokenizer.clearInput();
+    }
+  }
+
+  /**
+   * @return fully parsed value at {@param entry} (objects and arrays are parsed
+   *         with all of their contents)
+   */
+  public <T> T getValue(int entry) throws JSParsingException {
+    if (valueParser == null) {
+      valueParser = new JSParser();
+    }
+    return getValue(entry, valueParser);
+  }
+
+  /**
+   * Same as {@link #getValue(int)} but parses the value with {@param parser}, so that
+   * values can be decoded concurrently (each thread must use its own parser)
+   */
+  public <T> T getValue(int entry, JSParser parser) throws JSParsingException {
+    final int start;
+    final int end;
+    switch (getType(entry)) {
+      case TYPE_OBJECT:
+      case TYPE_ARRAY:
+        start = getOffset(entry);
+        end = getOffset(getEndEntry(entry)) + 1;
+        break;
+      case TYPE_STRING:
+      case TYPE_NUMBER:
+        start = entries[entry * ENTRY_SIZE + 1];
+        end = entries[entry * ENTRY_SIZE + 2];
+        break;
+      case TYPE_TRUE:
+        return (T) Boolean.TRUE;
+      case TYPE_FALSE:
+        return (T) Boolean.FALSE;
+      case TYPE_NULL:
+        return null;
+      case TYPE_UNDEFINED:
+        return (T) JSUndefined.get();
+      default:
+        throw unexpectedType(entry, "value");
+    }
+    if (chars != null) {
+      parser.setInput(chars, offset + start, end - start);
+    } else {
+      parser.setInput(bytes, offset + start, end - start);
+    }
+    try {
+      return parser.parse();
+    } catch (JSParsingException e) {
+      // make the offset relative to the beginning of the whole input
+      throw new JSParsingException(start + e.getErrorOffset(), e.getErrMessage(), e);
+    } finally {
+      parser.clearInput();
+    }
+  }
+
+  /**
+   * Checks whether key at {@param entry} is equal to {@param key}, keys without
+   * escape sequences are compared in place without decoding
+   */
+  public boolean keyEquals(int entry, String key) throws JSParsingException {
+    if (getType(entry) != TYPE_KEY) {
+      throw unexpectedType(entry, "key");
+    }
+    int start = offset + entries[entry * ENTRY_SIZE + 1];
+    int end = offset + entries[entry * ENTRY_SIZE + 2];
+    final int first = charAt(start);
+    if (first == '"' || first == '\'') {
+      start++;
+      end--;
+    } else if (Tokenizer.isFloatingNumberStart((char) first)) {
+      // numeric keys are normalized (e.g. 1.50 is '1.5')
+      return key.equals(getString(entry));
+    }
+    final int keyLength = key.length();
+    if (end - start != keyLength) {
+      // may still be equal if there are escapes or non-ASCII bytes
+      return hasSpecialChars(start, end) && key.equals(getString(entry));
+    }
+    for (int i = 0; i < keyLength; i++) {
+      final int ch = charAt(start + i);
+      if (ch == '\\' || ch >= 0x80) {
+        return key.equals(getString(entry));
+      }
+      if (ch != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void index(Tokenizer tokenizer) throws JSParsingException {
+    tokenizer.setSkipStrings(true);
+    int[] containers = new int[8];
+    int[] sizes = new int[8];
+    int depth = 0;
+
+    Token token = tokenizer.next();
+    boolean afterValue = !appendValue(tokenizer, token);
+    if (!afterValue) {
+      containers[depth++] = entryCount - 1;
+    }
+    while (depth > 0) {
+      final boolean object = entries[containers[depth - 1] * ENTRY_SIZE] == TYPE_OBJECT;
+      final Token close = object ? Token.CURLY_CLOSE : Token.SQ_CLOSE;
+      token = tokenizer.next();
+      if (token == close) {
+        final int container = containers[--depth];
+        entries[container * ENTRY_SIZE + 2] = entryCount;
+        append(TYPE_END, tokenizer.getPrevIndex(), sizes[depth]);
+        afterValue = true;
+        continue;
+      }
+      if (afterValue) {
+        if (token != Token.COMMA) {
+          throw new JSParsingException(tokenizer.getPrevIndex(), object
+              ? "Expected ',' as key-value pairs separator"
+              : "Expected ',' as separator of array elements");
+        }
+        afterValue = false;
+        continue;
+      }
+      sizes[depth - 1]++;
+      if (object) {
+        if (!isKey(token)) {
+          throw new JSParsingException(tokenizer.getPrevIndex(), "Expected valid key");
+        }
+        append(TYPE_KEY, tokenizer.getPrevIndex(), tokenizer.getIndex());
+        if (tokenizer.next() != Token.COLON) {
+          throw new JSParsingException(tokenizer.getPrevIndex(),
+              "Expected ':' as separator of Key and Value");
+        }
+        token = tokenizer.next();
+        if (token != Token.KEY && !isValue(token)) {
+          throw new JSParsingException(tokenizer.getPrevIndex(),
+              "Expected value after ':' in object");
+        }
+      } else if (token == Token.COMMA) {
+        // hole in the array
+        append(TYPE_UNDEFINED, tokenizer.getPrevIndex(), tokenizer.getPrevIndex());
+        continue;
+      }
+      afterValue = !appendValue(tokenizer, token);
+      if (!afterValue) {
+        if (depth == containers.length) {
+          containers = Arrays.copyOf(containers, depth * 2);
+          sizes = Arrays.copyOf(sizes, depth * 2);
+        }
+        sizes[depth] = 0;
+        containers[depth++] = entryCount - 1;
+      }
+    }
+  }
+
+  /**
+   * @return true if the value is an object or array that was opened
+   */
+  private boolean appendValue(Tokenizer tokenizer, Token token) throws JSParsingException {
+    final int start = tokenizer.getPrevIndex();
+    final int end = tokenizer.getIndex();
+    switch (token) {
+      case CURLY_OPEN:
+        append(TYPE_OBJECT, start, 0);
+        return true;
+      case SQ_OPEN:
+        append(TYPE_ARRAY, start, 0);
+        return true;
+      case STRING:
+        append(TYPE_STRING, start, end);
+        return false;
+      case NUMBER:
+        append(TYPE_NUMBER, start, end);
+        return false;
+      case TRUE:
+        append(TYPE_TRUE, start, end);
+        return false;
+      case FALSE:
+        append(TYPE_FALSE, start, end);
+        return false;
+      case NULL:
+        append(TYPE_NULL, start, end);
+        return false;
+      case UNDEFINED:
+        append(TYPE_UNDEFINED, start, end);
+        return false;
+      case KEY:
+        throw new JSParsingException(start, substring(start, end) + " is not defined");
+      default:
+        throw new JSParsingException(start, JSParser.DEFAULT_PARSE_ERROR_MSG);
+    }
+  }
+
+  private void append(int type, int start, int value) {
+    int index = entryCount * ENTRY_SIZE;
+    if (index == entries.length) {
+      entries = Arrays.copyOf(entries, (entryCount + (entryCount >> 1)) * ENTRY_SIZE);
+    }
+    entries[index++] = type;
+    entries[index++] = start;
+    entries[index] = value;
+    entryCount++;
+  }
+
+  private Tokenizer tokenize(int entry, Tokenizer tokenizer) throws JSParsingException {
+    final int index = entry * ENTRY_SIZE;
+    final int start = offset + entries[index + 1];
+    final int end = offset + entries[index + 2];
+    if (chars != null) {
+      tokenizer.setInput(chars, start, end - start);
+    } else {
+      tokenizer.setInput(bytes, start, end - start);
+    }
+    tokenizer.next();
+    return tokenizer;
+  }
+
+  private int charAt(int index) {
+    return chars != null ? chars[index] : bytes[index] & 0xff;
+  }
+
+  private boolean hasSpecialChars(int from, int to) {
+    for (int i = from; i < to; i++) {
+      final int ch = charAt(i);
+      if (ch == '\\' || ch >= 0x80) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String substring(int from, int to) {
+    if (chars != null) {
+      return new String(chars, offset + from, to - from);
+    }
+    return new String(bytes, offset + from, to - from, Utils.UTF_8_CHARSET);
+  }
+
+  private void checkEntry(int entry) {
+    if (entry < 0 || entry >= entryCount) {
+      throw new IndexOutOfBoundsException("Entry: " + entry + ", Count: " + entryCount);
+    }
+  }
+
+  private void checkContainer(int entry) {
+    final int type = getType(entry);
+    if (type != TYPE_OBJECT && type != TYPE_ARRAY) {
+      throw unexpectedType(entry, "object or array");
+    }
+  }
+
+  private IllegalStateException unexpectedType(int entry, String expected) {
+    return new IllegalStateException("Expected " + expected + " at entry " + entry
+        + " but found type " + getType(entry));
+  }
+
+  private static boolean isKey(Token token) {
+    return token == Token.KEY || isValue(token)
+        && token != Token.CURLY_OPEN && token != Token.SQ_OPEN;
+  }
+
+  private static boolean isValue(Token token) {
+    switch (token) {
+      case CURLY_OPEN:
+      case SQ_OPEN:
+      case STRING:
+      case NUMBER:
+      case TRUE:
+      case FALSE:
+      case NULL:
+      case UNDEFINED:
+        return true;
+      default:
+        return false;
+    }
+  }
+}
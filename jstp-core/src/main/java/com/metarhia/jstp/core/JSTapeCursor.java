@@ -0,0 +1,198 @@
+package com.metarhia.jstp.core;
+
+import java.util.Arrays;
+
+/**
+ * Forward-only reader of the {@link JSTape}. Cursor always points to some entry
+ * of the tape: a value, a key or the end of the container that was entered.
+ * Reading a value moves the cursor past it, skipping of the objects and arrays
+ * is O(1) regardless of their size.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * cursor.enterObject();
+ * while (cursor.hasNext()) {
+ *   if (cursor.nextKey().equals("id")) {
+ *     id = cursor.getNumber();
+ *   } else {
+ *     cursor.skipValue();
+ *   }
+ * }
+ * cursor.exit();
+ * </pre>
+ */
+public class JSTapeCursor {
+
+  private final JSTape tape;
+
+  private int entry;
+
+  /**
+   * End entries of the containers that were entered
+   */
+  private int[] ends = new int[8];
+
+  private int depth;
+
+  JSTapeCursor(JSTape tape) {
+    this.tape = tape;
+  }
+
+  /**
+   * @return type of the current entry (see {@link JSTape#TYPE_OBJECT} etc.)
+   */
+  public int getType() {
+    return tape.getType(entry);
+  }
+
+  /**
+   * @return index of the current entry in the tape
+   */
+  public int getEntry() {
+    return entry;
+  }
+
+  /**
+   * @return number of containers that were entered and not exited yet
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return true if there are more values (or keys) in the current container
+   */
+  public boolean hasNext() {
+    final int type = getType();
+    return type != JSTape.TYPE_END && type != JSTape.TYPE_NONE;
+  }
+
+  /**
+   * @return number of key-value pairs or elements of the current object or array
+   */
+  public int getSize() {
+    return tape.getSize(entry);
+  }
+
+  /**
+   * Moves to the first key of the current object
+   */
+  public void enterObject() {
+    enter(JSTape.TYPE_OBJECT);
+  }
+
+  /**
+   * Moves to the first element of the current array
+   */
+  public void enterArray() {
+    enter(JSTape.TYPE_ARRAY);
+  }
+
+  /**
+   * Skips the rest of the container that was entered last and moves right past it
+   */
+  public void exit() {
+    if (depth == 0) {
+      throw new IllegalStateException("No container to exit");
+    }
+    entry = ends[--depth] + 1;
+  }
+
+  /**
+   * @return current key, cursor is moved to its value
+   */
+  public String nextKey() throws JSParsingException {
+    final String key = tape.getString(checkType(JSTape.TYPE_KEY, "key"));
+    entry++;
+    return key;
+  }
+
+  /**
+   * Looks for the {@param key} starting from the current key of the object
+   * skipping values of all other keys
+   *
+   * @return true if the key is found (cursor is moved to its value) or false
+   *         if there is no such key (cursor is moved to the end of the object)
+   */
+  public boolean findKey(String key) throws JSParsingException {
+    while (hasNext()) {
+      if (tape.keyEquals(checkType(JSTape.TYPE_KEY, "key"), key)) {
+        entry++;
+        return true;
+      }
+      entry = tape.getNextEntry(entry);
+    }
+    return false;
+  }
+
+  /**
+   * Moves to the element of the current array at {@param index} counting
+   * from the current position
+   *
+   * @return false if there are less elements than needed (cursor is moved
+   *         to the end of the array)
+   */
+  public boolean skipElements(int index) {
+    for (int i = 0; i < index; i++) {
+      if (!hasNext()) {
+        return false;
+      }
+      entry = tape.getNextEntry(entry);
+    }
+    return hasNext();
+  }
+
+  /**
+   * Skips current value (or key with its value) whatever it is
+   */
+  public void skipValue() {
+    entry = tape.getNextEntry(entry);
+  }
+
+  public String getString() throws JSParsingException {
+    final String value = tape.getString(checkType(JSTape.TYPE_STRING, "string"));
+    entry++;
+    return value;
+  }
+
+  public Number getNumber() throws JSParsingException {
+    final Number value = tape.getNumber(checkType(JSTape.TYPE_NUMBER, "number"));
+    entry++;
+    return value;
+  }
+
+  public boolean getBoolean() {
+    final int type = getType();
+    if (type != JSTape.TYPE_TRUE && type != JSTape.TYPE_FALSE) {
+      throw new IllegalStateException("Expected boolean but found type " + type);
+    }
+    entry++;
+    return type == JSTape.TYPE_TRUE;
+  }
+
+  /**
+   * @return fully parsed current value
+   */
+  public <T> T getValue() throws JSParsingException {
+    final T value = tape.getValue(entry);
+    entry = tape.getNextEntry(entry);
+    return value;
+  }
+
+  private void enter(int type) {
+    final String name = type == JSTape.TYPE_OBJECT ? "object" : "array";
+    final int end = tape.getEndEntry(checkType(type, name));
+    if (depth == ends.length) {
+      ends = Arrays.copyOf(ends, depth * 2);
+    }
+    ends[depth++] = end;
+    entry++;
+  }
+
+  private int checkType(int type, String name) {
+    if (getType() != type) {
+      throw new IllegalStateException("Expected " + name + " but found type " + getType());
+    }
+    return entry;
+  }
+}
@@ -0,0 +1,66 @@
+package com.metarhia.jstp.core.JSTypes;
+
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unmodifiable view of the {@link JSObject}, all of the modification methods
+ * throw {@link UnsupportedOperationException}.
+ *
+ * @see JSTypesUtil#freeze(Object)
+ */
+public class FrozenJSObject<V> extends AbstractMap<String, V> implements JSObject<V> {
+
+  private final JSObject<V> delegate;
+
+  private final Map<String, V> unmodifiable;
+
+  public FrozenJSObject(JSObject<V> delegate) {
+    this.delegate = delegate;
+    this.unmodifiable = Collections.unmodifiableMap(delegate);
+  }
+
+  @Override
+  public V getByIndex(int index) {
+    return delegate.getByIndex(index);
+  }
+
+  @Override
+  public String getKey(int index) {
+    return delegate.getKey(index);
+  }
+
+  @Override
+  public Collection<? extends String> keys() {
+    return Collections.unmodifiableCollection(delegate.keys());
+  }
+
+  @Override
+  public Collection<? extends Map.Entry<String, V>> entries() {
+    return unmodifiable.entrySet();
+  }
+
+  @Override
+  public Set<Entry<String, V>> entrySet() {
+    return unmodifiable.entrySet();
+  }
+
+  @Override
+  public V get(Object key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return delegate.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return delegate.size();
+  }
+}
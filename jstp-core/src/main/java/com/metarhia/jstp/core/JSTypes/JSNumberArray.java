@@ -0,0 +1,402 @@
+package com.metarhia.jstp.core.JSTypes;
+
+import com.metarhia.jstp.core.JSInterfaces.JSSerializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Compact list of numbers backed by the array of primitives. Values are
+ * stored in int[] while all of them fit into int, then storage is widened
+ * to long[] and, once a fractional value is added, to double[] (so integers
+ * greater than 2^53 may lose precision, same as in JavaScript).
+ * <p>
+ * Boxed values returned by {@link #get(int)} are Integer or Long (depending
+ * on the value) for integer storage and Double otherwise; use primitive
+ * accessors like {@link #getDouble(int)} to avoid boxing.
+ * <p>
+ * Array can be made unmodifiable with {@link #freeze()} without losing its type.
+ */
+public class JSNumberArray extends AbstractList<Number>
+    implements RandomAccess, JSSerializable {
+
+  public static final int TYPE_INT = 0;
+
+  public static final int TYPE_LONG = 1;
+
+  public static final int TYPE_DOUBLE = 2;
+
+  private static final int DEFAULT_CAPACITY = 10;
+
+  private int type = TYPE_INT;
+
+  private int[] ints;
+
+  private long[] longs;
+
+  private double[] doubles;
+
+  private int size;
+
+  private boolean frozen;
+
+  public JSNumberArray() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public JSNumberArray(int initialCapacity) {
+    ints = new int[initialCapacity];
+  }
+
+  /**
+   * Creates list backed by {@param values}, the array is used directly
+   */
+  public JSNumberArray(int[] values) {
+    ints = values;
+    size = values.length;
+  }
+
+  /**
+   * Creates list backed by {@param values}, the array is used directly
+   */
+  public JSNumberArray(long[] values) {
+    type = TYPE_LONG;
+    longs = values;
+    size = values.length;
+  }
+
+  /**
+   * Creates list backed by {@param values}, the array is used directly
+   */
+  public JSNumberArray(double[] values) {
+    type = TYPE_DOUBLE;
+    doubles = values;
+    size = values.length;
+  }
+
+  /**
+   * Makes this array unmodifiable, all of the modification methods throw
+   * {@link UnsupportedOperationException} afterwards
+   *
+   * @return this array
+   * @see JSTypesUtil#freeze(Object)
+   */
+  public JSNumberArray freeze() {
+    frozen = true;
+    return this;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * @return type of the storage: {@link #TYPE_INT}, {@link #TYPE_LONG} or {@link #TYPE_DOUBLE}
+   */
+  public int getType() {
+    return type;
+  }
+
+  public int getInt(int index) {
+    checkIndex(index);
+    switch (type) {
+      case TYPE_INT:
+        return ints[index];
+      case TYPE_LONG:
+        return (int) longs[index];
+      default:
+        return (int) doubles[index];
+    }
+  }
+
+  public long getLong(int index) {
+    checkIndex(index);
+    switch (type) {
+      case TYPE_INT:
+        return ints[index];
+      case TYPE_LONG:
+        return longs[index];
+      default:
+        return (long) doubles[index];
+    }
+  }
+
+  public double getDouble(int index) {
+    checkIndex(index);
+    switch (type) {
+      case TYPE_INT:
+        return ints[index];
+      case TYPE_LONG:
+        return longs[index];
+      default:
+        return doubles[index];
+    }
+  }
+
+  public void addLong(long value) {
+    insertLong(size, value);
+  }
+
+  public void addDouble(double value) {
+    insertDouble(size, value);
+  }
+
+  /**
+   * @return copy of the values as int[] (values are cast if needed)
+   */
+  public int[] toIntArray() {
+    if (type == TYPE_INT) {
+      return Arrays.copyOf(ints, size);
+    }
+    final int[] result = new int[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = getInt(i);
+    }
+    return result;
+  }
+
+  /**
+   * @return copy of the values as long[] (values are cast if needed)
+   */
+  public long[] toLongArray() {
+    if (type == TYPE_LONG) {
+      return Arrays.copyOf(longs, size);
+    }
+    final long[] result = new long[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = getLong(i);
+    }
+    return result;
+  }
+
+  /**
+   * @return copy of the values as double[]
+   */
+  public double[] toDoubleArray() {
+    if (type == TYPE_DOUBLE) {
+      return Arrays.copyOf(doubles, size);
+    }
+    final double[] result = new double[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = getDouble(i);
+    }
+    return result;
+  }
+
+  @Override
+  public Number get(int index) {
+    checkIndex(index);
+    switch (type) {
+      case TYPE_INT:
+        return ints[index];
+      case TYPE_LONG:
+        final long value = longs[index];
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+          return (int) value;
+        }
+        return value;
+      default:
+        return doubles[index];
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Number set(int index, Number element) {
+    checkModifiable();
+    final Number prev = get(index);
+    if (isInteger(element)) {
+      final long value = element.longValue();
+      widenFor(value);
+      store(index, value);
+    } else {
+      widenToDouble();
+      doubles[index] = element.doubleValue();
+    }
+    return prev;
+  }
+
+  @Override
+  public void add(int index, Number element) {
+    if (isInteger(element)) {
+      insertLong(index, element.longValue());
+    } else {
+      insertDouble(index, element.doubleValue());
+    }
+  }
+
+  @Override
+  public Number remove(int index) {
+    checkModifiable();
+    final Number prev = get(index);
+    final int moved = size - index - 1;
+    switch (type) {
+      case TYPE_INT:
+        System.arraycopy(ints, index + 1, ints, index, moved);
+        break;
+      case TYPE_LONG:
+        System.arraycopy(longs, index + 1, longs, index, moved);
+        break;
+      default:
+        System.arraycopy(doubles, index + 1, doubles, index, moved);
+    }
+    size--;
+    modCount++;
+    return prev;
+  }
+
+  @Override
+  public void clear() {
+    checkModifiable();
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public StringBuilder stringify(StringBuilder builder) {
+    builder.append('[');
+    for (int i = 0; i < size; i++) {
+      if (i != 0) {
+        builder.append(',');
+      }
+      switch (type) {
+        case TYPE_INT:
+          builder.append(ints[i]);
+          break;
+        case TYPE_LONG:
+          builder.append(longs[i]);
+          break;
+        default:
+          builder.append(doubles[i]);
+      }
+    }
+    return builder.append(']');
+  }
+
+  private void insertLong(int index, long value) {
+    checkModifiable();
+    checkPositionIndex(index);
+    widenFor(value);
+    makeRoom(index);
+    store(index, value);
+  }
+
+  private void insertDouble(int index, double value) {
+    checkModifiable();
+    checkPositionIndex(index);
+    widenToDouble();
+    makeRoom(index);
+    doubles[index] = value;
+  }
+
+  private void store(int index, long value) {
+    switch (type) {
+      case TYPE_INT:
+        ints[index] = (int) value;
+        break;
+      case TYPE_LONG:
+        longs[index] = value;
+        break;
+      default:
+        doubles[index] = value;
+    }
+  }
+
+  /**
+   * Shifts values starting at {@param index} to the right growing storage if needed
+   */
+  private void makeRoom(int index) {
+    final int capacity = capacity();
+    if (size == capacity) {
+      final int newCapacity = Math.max(capacity + (capacity >> 1), DEFAULT_CAPACITY);
+      switch (type) {
+        case TYPE_INT:
+          ints = Arrays.copyOf(ints, newCapacity);
+          break;
+        case TYPE_LONG:
+          longs = Arrays.copyOf(longs, newCapacity);
+          break;
+        default:
+          doubles = Arrays.copyOf(doubles, newCapacity);
+      }
+    }
+    final int moved = size - index;
+    if (moved > 0) {
+      switch (type) {
+        case TYPE_INT:
+          System.arraycopy(ints, index, ints, index + 1, moved);
+          break;
+        case TYPE_LONG:
+          System.arraycopy(longs, index, longs, index + 1, moved);
+          break;
+        default:
+          System.arraycopy(doubles, index, doubles, index + 1, moved);
+      }
+    }
+    size++;
+    modCount++;
+  }
+
+  private int capacity() {
+    switch (type) {
+      case TYPE_INT:
+        return ints.length;
+      case TYPE_LONG:
+        return longs.length;
+      default:
+        return doubles.length;
+    }
+  }
+
+  private void widenFor(long value) {
+    if (type == TYPE_INT && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)) {
+      longs = new long[capacity()];
+      for (int i = 0; i < size; i++) {
+        longs[i] = ints[i];
+      }
+      ints = null;
+      type = TYPE_LONG;
+    }
+  }
+
+  private void widenToDouble() {
+    if (type == TYPE_DOUBLE) {
+      return;
+    }
+    final double[] values = new double[capacity()];
+    for (int i = 0; i < size; i++) {
+      values[i] = type == TYPE_INT ? ints[i] : longs[i];
+    }
+    doubles = values;
+    ints = null;
+    longs = null;
+    type = TYPE_DOUBLE;
+  }
+
+  private void checkModifiable() {
+    if (frozen) {
+      throw new UnsupportedOperationException("Array is frozen");
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private void checkPositionIndex(int index) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private static boolean isInteger(Number value) {
+    return value instanceof Integer || value instanceof Long
+        || value instanceof Short || value instanceof Byte;
+  }
+}
@@ -0,0 +1,127 @@
+package com.metarhia.jstp.core.JSTypes;
+
+import com.metarhia.jstp.core.JSInterfaces.JSSerializable;
+import com.metarhia.jstp.core.Utils;
+
+/**
+ * String value that references characters of the parsed input instead of
+ * copying them (see {@link com.metarhia.jstp.core.JSParser#setStringSlices(boolean)}).
+ * Slices are backed either by char[] input or by ASCII range of UTF-8 encoded
+ * byte[] input and stay valid only while that array is not modified, so a slice
+ * must be converted with {@link #toString()} (the result is cached) if it is kept
+ * longer than the input message.
+ * <p>
+ * Slices are equal to other slices with the same characters and have the same
+ * hash code as Strings with them, use {@link #contentEquals(CharSequence)} to
+ * compare slices with Strings.
+ */
+public final class JSStringSlice implements CharSequence, JSSerializable {
+
+  private final char[] chars;
+
+  private final byte[] bytes;
+
+  private final int offset;
+
+  private final int length;
+
+  private String string;
+
+  private int hash;
+
+  /**
+   * Creates slice of the {@param length} chars of the {@param chars} starting at {@param offset}
+   */
+  public JSStringSlice(char[] chars, int offset, int length) {
+    this(chars, null, offset, length);
+  }
+
+  /**
+   * Creates slice of the {@param length} bytes of the {@param bytes} starting at
+   * {@param offset}, all of the bytes in range must be ASCII characters
+   */
+  public JSStringSlice(byte[] bytes, int offset, int length) {
+    this(null, bytes, offset, length);
+  }
+
+  private JSStringSlice(char[] chars, byte[] bytes, int offset, int length) {
+    this.chars = chars;
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+    }
+    return chars != null ? chars[offset + index] : (char) bytes[offset + index];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException(
+          "Start: " + start + ", End: " + end + ", Length: " + length);
+    }
+    return new JSStringSlice(chars, bytes, offset + start, end - start);
+  }
+
+  /**
+   * @return true if this slice has the same characters as {@param other}
+   */
+  public boolean contentEquals(CharSequence other) {
+    if (other.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (charAt(i) != other.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj == this
+        || obj instanceof JSStringSlice && contentEquals((JSStringSlice) obj);
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      for (int i = 0; i < length; i++) {
+        h = 31 * h + charAt(i);
+      }
+      hash = h;
+    }
+    return h;
+  }
+
+  /**
+   * @return String with the characters of this slice, created on the first call
+   */
+  @Override
+  public String toString() {
+    if (string == null) {
+      string = chars != null
+          ? new String(chars, offset, length)
+          : new String(bytes, offset, length, Utils.ASCII_CHARSET);
+    }
+    return string;
+  }
+
+  @Override
+  public StringBuilder stringify(StringBuilder builder) {
+    builder.append('\'');
+    return Utils.escapeString(this, builder).append('\'');
+  }
+}
@@ -1,13 +1,56 @@
 package com.metarhia.jstp.core.JSTypes;
 
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import java.util.Collections;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 
 public final class JSTypesUtil {
 
   private JSTypesUtil() {
   }
 
+  /**
+   * Makes {@param value} deeply unmodifiable, so that it can be safely shared:
+   * objects are wrapped in {@link FrozenJSObject} and arrays in unmodifiable
+   * lists after all of their contents are frozen ({@link JSNumberArray}s are
+   * frozen with {@link JSNumberArray#freeze()} to keep their type). Containers are frozen in place,
+   * so the original references must not be used for modification afterwards.
+   *
+   * @return frozen value, scalars are returned as is
+   */
+  public static <T> T freeze(T value) {
+    if (value instanceof JSObject) {
+      final JSObject<Object> object = (JSObject<Object>) value;
+      if (object instanceof FrozenJSObject) {
+        return value;
+      }
+      for (Map.Entry<String, Object> entry : object.entrySet()) {
+        final Object element = entry.getValue();
+        final Object frozen = freeze(element);
+        if (frozen != element) {
+          entry.setValue(frozen);
+        }
+      }
+      return (T) new FrozenJSObject<>(object);
+    } else if (value instanceof JSNumberArray) {
+      return (T) ((JSNumberArray) value).freeze();
+    } else if (value instanceof List) {
+      final List<Object> list = (List<Object>) value;
+      final ListIterator<Object> iterator = list.listIterator();
+      while (iterator.hasNext()) {
+        final Object element = iterator.next();
+        final Object frozen = freeze(element);
+        if (frozen != element) {
+          iterator.set(frozen);
+        }
+      }
+      return (T) Collections.unmodifiableList(list);
+    }
+    return value;
+  }
+
   public static <T> T getFromArray(List<?> array, int... indexes) {
     Object next = array;
     for (int i : indexes) {
@@ -0,0 +1,327 @@
+package com.metarhia.jstp.core.JSTypes;
+
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSParser;
+import com.metarhia.jstp.core.JSParsingException;
+import com.metarhia.jstp.core.Tokens.Token;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation of JSObject that only indexes top-level keys of the input
+ * and parses nested objects and arrays upon the first access to them via
+ * {@link #get(Object)} or {@link #getByIndex(int)}. Primitive values are
+ * parsed right away as it costs nothing more than skipping them.
+ * <p>
+ * Nested values are only checked for matching quotes and brackets when indexing,
+ * so if the value is ill-formed {@link RuntimeException} with {@link JSParsingException}
+ * as a cause will be thrown upon the access to it.
+ * Any operation that needs all of the values (iteration over entries, modification,
+ * equals and others) parses the whole object.
+ * <p>
+ * Values may be read from multiple threads concurrently (lazy parsing is
+ * synchronized), but modifications are not thread-safe and must not be done
+ * concurrently with any other access.
+ * <p>
+ * Use {@link JSParser#parseLazyObject(String)} or
+ * {@link JSParser#parseLazyObject(byte[], int, int)} to create an instance.
+ */
+public class LazyJSObject<V> extends AbstractMap<String, V> implements JSObject<V> {
+
+  /**
+   * Number of keys after which lookup by key uses hash table instead of linear search
+   */
+  private static final int LINEAR_SEARCH_THRESHOLD = 8;
+
+  private static final Object UNPARSED = new Object();
+
+  private final JSParser parser;
+
+  private final char[] chars;
+
+  private final byte[] bytes;
+
+  private final int offset;
+
+  private String[] keys = new String[4];
+
+  private Object[] values = new Object[4];
+
+  private int[] starts = new int[4];
+
+  private int[] ends = new int[4];
+
+  private int size;
+
+  private Map<String, Integer> keyIndexes;
+
+  /**
+   * Fully parsed copy of the object, once it is created all of the calls go to it
+   */
+  private volatile IndexedHashMap<V> delegate;
+
+  /**
+   * @see JSParser#parseLazyObject(String)
+   */
+  public LazyJSObject(char[] input, int offset, int length) throws JSParsingException {
+    this.chars = input;
+    this.bytes = null;
+    this.offset = offset;
+    this.parser = new JSParser();
+    this.parser.setInput(input, offset, length);
+    index();
+  }
+
+  /**
+   * @see JSParser#parseLazyObject(byte[], int, int)
+   */
+  public LazyJSObject(byte[] input, int offset, int length) throws JSParsingException {
+    this.chars = null;
+    this.bytes = input;
+    this.offset = offset;
+    this.parser = new JSParser(input, offset, length);
+    index();
+  }
+
+  private void index() throws JSParsingException {
+    final Tokenizer tokenizer = parser.getTokenizer();
+    if (tokenizer.next() != Token.CURLY_OPEN) {
+      throw new JSParsingException("Expected '{' at the beginning of JSObject");
+    }
+
+    while (tokenizer.getLastToken() != Token.CURLY_CLOSE
+        && tokenizer.next() != Token.CURLY_CLOSE) {
+      final String key = tokenizer.getStr();
+      if (key == null) {
+        throw new JSParsingException(tokenizer.getPrevIndex(), "Expected valid key");
+      }
+      if (tokenizer.next() != Token.COLON) {
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            "Expected ':' as separator of Key and Value");
+      }
+
+      final Token token = tokenizer.next();
+      final int start = tokenizer.getPrevIndex();
+      Object value;
+      if (token == Token.CURLY_OPEN || token == Token.SQ_OPEN) {
+        tokenizer.skipContainer();
+        value = UNPARSED;
+      } else {
+        try {
+          value = parser.parseInternal();
+        } catch (JSParsingException e) {
+          if (!e.getErrMessage().equals(JSParser.DEFAULT_PARSE_ERROR_MSG)) {
+            throw e;
+          }
+          throw new JSParsingException(tokenizer.getPrevIndex(),
+              "Expected value after ':' in object");
+        }
+      }
+      add(key, value, start, tokenizer.getIndex());
+
+      // skip comma
+      if (tokenizer.next() != Token.COMMA && tokenizer.getLastToken() != Token.CURLY_CLOSE) {
+        throw new JSParsingException(tokenizer.getPrevIndex(),
+            "Expected ',' as key-value pairs separator");
+      }
+    }
+  }
+
+  private void add(String key, Object value, int start, int end) {
+    int index = indexOfKey(key);
+    if (index < 0) {
+      if (size == keys.length) {
+        final int newLength = size * 2;
+        keys = Arrays.copyOf(keys, newLength);
+        values = Arrays.copyOf(values, newLength);
+        starts = Arrays.copyOf(starts, newLength);
+        ends = Arrays.copyOf(ends, newLength);
+      }
+      index = size++;
+      keys[index] = key;
+      if (keyIndexes != null) {
+        keyIndexes.put(key, index);
+      } else if (size > LINEAR_SEARCH_THRESHOLD) {
+        keyIndexes = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+          keyIndexes.put(keys[i], i);
+        }
+      }
+    }
+    values[index] = value;
+    starts[index] = start;
+    ends[index] = end;
+  }
+
+  private int indexOfKey(Object key) {
+    if (keyIndexes != null) {
+      final Integer index = keyIndexes.get(key);
+      return index == null ? -1 : index;
+    }
+    for (int i = 0; i < size; i++) {
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private synchronized V valueAt(int index) {
+    Object value = values[index];
+    if (value == UNPARSED) {
+      final int start = offset + starts[index];
+      final int length = ends[index] - starts[index];
+      if (bytes != null) {
+        parser.setInput(bytes, start, length);
+      } else {
+        parser.setInput(chars, start, length);
+      }
+      try {
+        value = parser.parse();
+      } catch (JSParsingException e) {
+        throw new RuntimeException("Cannot parse value of '" + keys[index] + "'", e);
+      }
+      values[index] = value;
+    }
+    return (V) value;
+  }
+
+  private IndexedHashMap<V> materialize() {
+    IndexedHashMap<V> map = delegate;
+    if (map == null) {
+      synchronized (this) {
+        map = delegate;
+        if (map == null) {
+          map = new IndexedHashMap<>(size);
+          for (int i = 0; i < size; i++) {
+            map.put(keys[i], valueAt(i));
+          }
+          delegate = map;
+        }
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Checks if value is an array without parsing it
+   *
+   * @param index index of the value
+   *
+   * @return true if value at {@param index} is an array and false otherwise
+   */
+  public boolean isArray(int index) {
+    final IndexedHashMap<V> map = delegate;
+    if (map != null) {
+      return map.getByIndex(index) instanceof List;
+    }
+    if (index >= size) {
+      return false;
+    }
+    final Object value = values[index];
+    if (value == UNPARSED) {
+      final int start = offset + starts[index];
+      return bytes != null ? bytes[start] == '[' : chars[start] == '[';
+    }
+    return value instanceof List;
+  }
+
+  @Override
+  public V getByIndex(int index) {
+    final IndexedHashMap<V> map = delegate;
+    if (map != null) {
+      return map.getByIndex(index);
+    }
+    if (index >= size) {
+      return null;
+    }
+    return valueAt(index);
+  }
+
+  @Override
+  public String getKey(int index) {
+    final IndexedHashMap<V> map = delegate;
+    if (map != null) {
+      return map.getKey(index);
+    }
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return keys[index];
+  }
+
+  @Override
+  public V get(Object key) {
+    final IndexedHashMap<V> map = delegate;
+    if (map != null) {
+      return map.get(key);
+    }
+    final int index = indexOfKey(key);
+    return index < 0 ? null : valueAt(index);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    final IndexedHashMap<V> map = delegate;
+    if (map != null) {
+      return map.containsKey(key);
+    }
+    return indexOfKey(key) >= 0;
+  }
+
+  @Override
+  public int size() {
+    final IndexedHashMap<V> map = delegate;
+    return map != null ? map.size() : size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public V put(String key, V value) {
+    return materialize().put(key, value);
+  }
+
+  @Override
+  public V remove(Object key) {
+    return materialize().remove(key);
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ? extends V> m) {
+    materialize().putAll(m);
+  }
+
+  @Override
+  public void clear() {
+    materialize().clear();
+  }
+
+  @Override
+  public Collection<? extends String> keys() {
+    final IndexedHashMap<V> map = delegate;
+    if (map != null) {
+      return map.keys();
+    }
+    return Arrays.asList(keys).subList(0, size);
+  }
+
+  @Override
+  public Collection<? extends Map.Entry<String, V>> entries() {
+    return materialize().entries();
+  }
+
+  @Override
+  public Set<Entry<String, V>> entrySet() {
+    return materialize().entrySet();
+  }
+}
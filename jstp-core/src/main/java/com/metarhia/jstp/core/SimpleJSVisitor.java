@@ -0,0 +1,50 @@
+package com.metarhia.jstp.core;
+
+import com.metarhia.jstp.core.JSInterfaces.JSVisitor;
+
+/**
+ * Simple visitor that overwrites all {@link JSVisitor} methods to allow a
+ * user to only overwrite methods needed and avoid writing stubs for the other methods
+ */
+public class SimpleJSVisitor implements JSVisitor {
+
+  @Override
+  public void onObjectStart() {
+  }
+
+  @Override
+  public void onKey(String key) {
+  }
+
+  @Override
+  public void onObjectEnd() {
+  }
+
+  @Override
+  public void onArrayStart() {
+  }
+
+  @Override
+  public void onArrayEnd() {
+  }
+
+  @Override
+  public void onString(String value) {
+  }
+
+  @Override
+  public void onNumber(Number value) {
+  }
+
+  @Override
+  public void onBoolean(boolean value) {
+  }
+
+  @Override
+  public void onNull() {
+  }
+
+  @Override
+  public void onUndefined() {
+  }
+}
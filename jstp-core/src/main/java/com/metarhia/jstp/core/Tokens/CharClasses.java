@@ -0,0 +1,81 @@
+package com.metarhia.jstp.core.Tokens;
+
+/**
+ * Precomputed classes of ASCII characters used by {@link Tokenizer}, so that
+ * classification of the most common characters is a single table lookup.
+ * Non-ASCII characters are classified by the slower {@link Character} methods.
+ */
+final class CharClasses {
+
+  static final int WHITESPACE = 1;
+
+  static final int IDENTIFIER_START = 1 << 1;
+
+  static final int IDENTIFIER_PART = 1 << 2;
+
+  static final int DIGIT = 1 << 3;
+
+  static final int NUMBER_START = 1 << 4;
+
+  static final int LETTER = 1 << 5;
+
+  private static final int ASCII_SIZE = 0x80;
+
+  private static final byte[] TABLE = new byte[ASCII_SIZE];
+
+  static {
+    for (int ch = 0; ch < ASCII_SIZE; ch++) {
+      int classes = 0;
+      if (Character.isWhitespace(ch)) {
+        classes |= WHITESPACE;
+      }
+      if (isUnicodeIdentifierStart(ch)) {
+        classes |= IDENTIFIER_START;
+      }
+      if (isUnicodeIdentifierPart(ch)) {
+        classes |= IDENTIFIER_PART;
+      }
+      if (ch >= '0' && ch <= '9') {
+        classes |= DIGIT | NUMBER_START;
+      }
+      if (ch == '.' || ch == '+' || ch == '-') {
+        classes |= NUMBER_START;
+      }
+      if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')) {
+        classes |= LETTER;
+      }
+      TABLE[ch] = (byte) classes;
+    }
+  }
+
+  private CharClasses() {
+  }
+
+  /**
+   * @return true if ASCII character {@param ch} belongs to any of the {@param classes},
+   *         always false for non-ASCII characters
+   */
+  static boolean isAscii(int ch, int classes) {
+    return ch >= 0 && ch < ASCII_SIZE && (TABLE[ch] & classes) != 0;
+  }
+
+  static boolean isWhitespace(int ch) {
+    return ch < ASCII_SIZE ? isAscii(ch, WHITESPACE) : Character.isWhitespace(ch);
+  }
+
+  static boolean isIdentifierStart(int ch) {
+    return ch < ASCII_SIZE ? isAscii(ch, IDENTIFIER_START) : isUnicodeIdentifierStart(ch);
+  }
+
+  static boolean isIdentifierPart(int ch) {
+    return ch < ASCII_SIZE ? isAscii(ch, IDENTIFIER_PART) : isUnicodeIdentifierPart(ch);
+  }
+
+  private static boolean isUnicodeIdentifierStart(int ch) {
+    return Character.isUnicodeIdentifierStart(ch) || ch == '_' || ch == '$' || ch == '\\';
+  }
+
+  private static boolean isUnicodeIdentifierPart(int ch) {
+    return Character.isUnicodeIdentifierPart(ch) || ch == '_' || ch == '$';
+  }
+}
@@ -0,0 +1,151 @@
+package com.metarhia.jstp.core.Tokens;
+
+import java.math.BigInteger;
+
+/**
+ * Converts decimal numbers given as mantissa and exponent of ten to the closest
+ * double without going through the string representation. Uses exact floating point
+ * arithmetic for small values and Eisel-Lemire algorithm for all others
+ * (see "Number Parsing at a Gigabyte per Second" by Daniel Lemire).
+ */
+public final class DoubleConverter {
+
+  private static final int MIN_EXP10 = -348;
+
+  private static final int MAX_EXP10 = 347;
+
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  private static final double[] EXACT_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private DoubleConverter() {
+  }
+
+  /**
+   * Computes correctly rounded value of {@param mantissa} * 10^{@param exp10}
+   *
+   * @param mantissa non-negative decimal mantissa
+   * @param exp10    decimal exponent
+   * @param negative true if the result must be negative
+   *
+   * @return closest double or {@link Double#NaN} if the result cannot be computed
+   *         exactly by this method, so the caller has to fall back to
+   *         {@link Double#parseDouble(String)}
+   */
+  public static double toDouble(long mantissa, int exp10, boolean negative) {
+    double result;
+    if (mantissa == 0 || exp10 < MIN_EXP10) {
+      result = 0.0;
+    } else if (exp10 > MAX_EXP10) {
+      result = Double.POSITIVE_INFINITY;
+    } else if (mantissa <= MAX_EXACT_MANTISSA && exp10 >= -22 && exp10 <= 22) {
+      // both operands are exact so the result is correctly rounded
+      result = exp10 < 0
+          ? mantissa / EXACT_POWERS_OF_TEN[-exp10]
+          : mantissa * EXACT_POWERS_OF_TEN[exp10];
+    } else {
+      result = eiselLemire(mantissa, exp10);
+    }
+    return negative ? -result : result;
+  }
+
+  private static double eiselLemire(long mantissa, int exp10) {
+    final int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+    final long man = mantissa << leadingZeros;
+    long exp2 = ((217706L * exp10) >> 16) + 64 + 1023 - leadingZeros;
+
+    final int powerIndex = (exp10 - MIN_EXP10) * 2;
+    final long powerLo = PowersOfTen.TABLE[powerIndex];
+    final long powerHi = PowersOfTen.TABLE[powerIndex + 1];
+
+    long hi = multiplyHigh(man, powerHi);
+    long lo = man * powerHi;
+    if ((hi & 0x1ff) == 0x1ff && unsignedLess(lo + man, man)) {
+      // lower bits may affect the result so take the rest of the power into account
+      final long lowerHi = multiplyHigh(man, powerLo);
+      final long lowerLo = man * powerLo;
+      long mergedHi = hi;
+      final long mergedLo = lo + lowerHi;
+      if (unsignedLess(mergedLo, lo)) {
+        mergedHi++;
+      }
+      if ((mergedHi & 0x1ff) == 0x1ff && mergedLo + 1 == 0
+          && unsignedLess(lowerLo + man, man)) {
+        return Double.NaN;
+      }
+      hi = mergedHi;
+      lo = mergedLo;
+    }
+
+    final long msb = hi >>> 63;
+    long resultMantissa = hi >>> (msb + 9);
+    exp2 -= 1 ^ msb;
+
+    // exactly halfway between two doubles, can't decide which way to round
+    if (lo == 0 && (hi & 0x1ff) == 0 && (resultMantissa & 3) == 1) {
+      return Double.NaN;
+    }
+
+    resultMantissa += resultMantissa & 1;
+    resultMantissa >>>= 1;
+    if ((resultMantissa >>> 53) > 0) {
+      resultMantissa >>>= 1;
+      exp2++;
+    }
+    // subnormal numbers and infinities are left for the fallback
+    if (exp2 < 1 || exp2 > 0x7fe) {
+      return Double.NaN;
+    }
+    return Double.longBitsToDouble(exp2 << 52 | resultMantissa & 0xfffffffffffffL);
+  }
+
+  /**
+   * @return upper 64 bits of the unsigned 128-bit product of {@param x} and {@param y}
+   */
+  private static long multiplyHigh(long x, long y) {
+    final long x0 = x & 0xffffffffL;
+    final long x1 = x >>> 32;
+    final long y0 = y & 0xffffffffL;
+    final long y1 = y >>> 32;
+    final long p01 = x0 * y1;
+    final long middle = x1 * y0 + ((x0 * y0) >>> 32) + (p01 & 0xffffffffL);
+    return x1 * y1 + (middle >>> 32) + (p01 >>> 32);
+  }
+
+  private static boolean unsignedLess(long a, long b) {
+    return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+  }
+
+  /**
+   * 128-bit approximations (rounded down) of the powers of ten normalized so that
+   * the most significant bit is set, stored as pairs of low and high 64 bits.
+   * Computed lazily upon the first use.
+   */
+  private static final class PowersOfTen {
+
+    static final long[] TABLE = new long[(MAX_EXP10 - MIN_EXP10 + 1) * 2];
+
+    static {
+      BigInteger power = BigInteger.ONE;
+      for (int exp10 = 0; exp10 <= MAX_EXP10; exp10++) {
+        final int shift = power.bitLength() - 128;
+        put(exp10, shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift));
+        power = power.multiply(BigInteger.TEN);
+      }
+      power = BigInteger.TEN;
+      for (int exp10 = -1; exp10 >= MIN_EXP10; exp10--) {
+        put(exp10, BigInteger.ONE.shiftLeft(power.bitLength() + 127).divide(power));
+        power = power.multiply(BigInteger.TEN);
+      }
+    }
+
+    private static void put(int exp10, BigInteger value) {
+      final int index = (exp10 - MIN_EXP10) * 2;
+      TABLE[index] = value.longValue();
+      TABLE[index + 1] = value.shiftRight(64).longValue();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.metarhia.jstp.core.Tokens;
+
+import com.metarhia.jstp.core.Utils;
+
+/**
+ * Bounded cache of short strings that allows to reuse String instances for
+ * repeated sequences of the input (e.g. keys of the objects) instead of
+ * allocating new ones. It is a direct-mapped table indexed by the hash of the
+ * sequence, so colliding sequences simply replace each other.
+ * <p>
+ * Instances may be shared between threads: String references are published
+ * atomically, so the worst outcome of a race is a cache miss.
+ */
+public class StringCache {
+
+  public static final int DEFAULT_CAPACITY = 512;
+
+  public static final int DEFAULT_MAX_LENGTH = 32;
+
+  private final String[] entries;
+
+  private final int mask;
+
+  private final int maxLength;
+
+  public StringCache() {
+    this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+  }
+
+  /**
+   * @param capacity  max number of cached strings (rounded up to the power of two)
+   * @param maxLength max length of the sequence that can be cached
+   */
+  public StringCache(int capacity, int maxLength) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.entries = new String[size];
+    this.mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * @return string equal to characters in range [{@param from}, {@param to}) of the
+   *         {@param input} or null if the range is too long or contains backslashes
+   *         (escape sequences must be processed by the caller)
+   */
+  public String get(char[] input, int from, int to) {
+    final int length = to - from;
+    if (length > maxLength) {
+      return null;
+    }
+    int hash = 0;
+    for (int i = from; i < to; i++) {
+      final char ch = input[i];
+      if (ch == '\\') {
+        return null;
+      }
+      hash = 31 * hash + ch;
+    }
+    final int slot = slot(hash);
+    String cached = entries[slot];
+    if (cached == null || cached.hashCode() != hash || !matches(cached, input, from, length)) {
+      cached = new String(input, from, length);
+      entries[slot] = cached;
+    }
+    return cached;
+  }
+
+  /**
+   * Same as {@link #get(char[], int, int)} but works on UTF-8 encoded {@param input},
+   * only ASCII sequences are cached, null is returned for all others
+   */
+  public String get(byte[] input, int from, int to) {
+    final int length = to - from;
+    if (length > maxLength) {
+      return null;
+    }
+    int hash = 0;
+    for (int i = from; i < to; i++) {
+      final byte b = input[i];
+      if (b < 0 || b == '\\') {
+        return null;
+      }
+      hash = 31 * hash + b;
+    }
+    final int slot = slot(hash);
+    String cached = entries[slot];
+    if (cached == null || cached.hashCode() != hash || !matches(cached, input, from, length)) {
+      cached = new String(input, from, length, Utils.ASCII_CHARSET);
+      entries[slot] = cached;
+    }
+    return cached;
+  }
+
+  /**
+   * Removes all of the cached strings
+   */
+  public void clear() {
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = null;
+    }
+  }
+
+  private int slot(int hash) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static boolean matches(String str, char[] input, int from, int length) {
+    if (str.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (str.charAt(i) != input[from + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matches(String str, byte[] input, int from, int length) {
+    if (str.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (str.charAt(i) != input[from + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
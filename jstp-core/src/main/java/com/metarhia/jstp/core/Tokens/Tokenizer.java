@@ -1,10 +1,11 @@
 package com.metarhia.jstp.core.Tokens;
 
 import com.metarhia.jstp.core.JSParsingException;
+import com.metarhia.jstp.core.JSTypes.JSStringSlice;
 import com.metarhia.jstp.core.JSTypes.JSUndefined;
 import com.metarhia.jstp.core.Utils;
 import java.io.Serializable;
-import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 
 public class Tokenizer implements Serializable {
 
@@ -15,55 +16,109 @@ public class Tokenizer implements Serializable {
   private static final String INFINITY_STR = String.valueOf(Double.POSITIVE_INFINITY);
   private static final String NAN_STR = String.valueOf(Double.NaN);
 
-  private static final CharRange NUMBER_RANGE = new CharRange(0x30, 0x39);
-  private static final CharRange LETTER_UPPER_RANGE = new CharRange(0x41, 0x5a);
-  private static final CharRange LETTER_LOWER_RANGE = new CharRange(0x61, 0x7a);
   public static final int MAX_INT_VALUE_LENGTH = String.valueOf(Integer.MAX_VALUE).length();
 
-  private final FloatMatchRange floatMatchRange = new FloatMatchRange();
+  /**
+   * Max size of the internal buffers that are kept after {@link #clearInput()}
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * Max number of significant digits that always fit into long
+   */
+  private static final int MAX_EXACT_DIGITS = 18;
+
+  /**
+   * Exponent value after which the number is zero or infinity anyway
+   */
+  private static final int MAX_EXPONENT = 100000;
 
   private final StringBuilder cachedBuilder = new StringBuilder(30);
 
-  private static Field valueReflection = null;
+  /**
+   * Reusable storage for inputs that have to be copied before tokenizing
+   * (Strings and direct ByteBuffers)
+   */
+  private char[] charBuffer = new char[0];
 
-  static {
-    try {
-      valueReflection = String.class.getDeclaredField("value");
-      valueReflection.setAccessible(true);
-    } catch (NoSuchFieldException e) {
-      valueReflection = null;
-    }
-  }
+  private byte[] byteBuffer = new byte[0];
 
-  private int length;
+  /**
+   * View of the byte[] input used to scan strings a word at a time, it is kept
+   * while the same array is tokenized (e.g. messages of the same network read)
+   */
+  private ByteBuffer words;
+
+  private int begin;
+  private int end;
   private Number number;
+  private boolean integerNumber;
+  private long longNumber;
+  private double doubleNumber;
   private String str;
   private char[] input;
+  private byte[] bytes;
   private int index;
   private int prevIndex;
   private Token lastToken;
-  private char ch;
+  private int ch;
+  private int exponent;
+
+  /**
+   * True if the last string scanned by {@link #getClosingQuoteIndex(int, int)}
+   * contains escape sequences
+   */
+  private boolean hasEscapes;
+
+  private boolean skipStrings;
+
+  /**
+   * Optional cache used to reuse instances of identifier strings
+   */
+  private StringCache keyCache;
+
+  /**
+   * Optional cache used to reuse instances of short string values
+   */
+  private StringCache valueCache;
+
+  private boolean stringSlices;
+
+  /**
+   * Value of the last string token if it was sliced (see {@link #setStringSlices(boolean)})
+   */
+  private JSStringSlice slice;
+
+  public Tokenizer() {
+    reset();
+  }
 
   public Tokenizer(String input) {
     setInput(input);
   }
 
+  public Tokenizer(byte[] input, int offset, int length) {
+    setInput(input, offset, length);
+  }
+
   public Token next() throws JSParsingException {
-    if (index >= length) {
-      return lastToken = Token.NONE;
+    slice = null;
+    while (true) {
+      skipWhitespace();
+      if (index >= end) {
+        return lastToken = Token.NONE;
+      }
+      ch = charAt(index++);
+      if (ch != '/' || index >= end || charAt(index) != '/') {
+        break;
+      }
+      // skip line comment
+      final int newLineIndex = indexOf('\n', index);
+      index = newLineIndex == -1 ? end : newLineIndex + 1;
     }
 
-    do {
-      ch = input[index];
-    } while (++index < length && Character.isWhitespace(ch));
-
     prevIndex = index - 1;
 
-    if (ch == '/' && input[index] == '/') {
-      index = indexOf('\n', index) + 1;
-      ch = input[index];
-    }
-
     switch (ch) {
       case '[':
         return lastToken = Token.SQ_OPEN;
@@ -82,24 +137,36 @@ public class Tokenizer implements Serializable {
     if (ch == 0x22 || ch == 0x27) { // double and single quotes
 //        if (ch == '"' || ch == '\'') {
 
-      int lastIndex = indexOf(ch, index);
-      while (lastIndex != -1
-          && input[lastIndex - 1] == '\\') {
-        lastIndex = indexOf(ch, lastIndex + 1);
-      }
-      if (lastIndex == -1) {
-        throw new JSParsingException(index - 1, "Unmatched quote");
+      int lastIndex = getClosingQuoteIndex(ch, index);
+      if (skipStrings) {
+        str = null;
+      } else if (hasEscapes) {
+        str = unescape(index, lastIndex);
+      } else if (stringSlices && (slice = getSlice(index, lastIndex)) != null) {
+        str = null;
+      } else {
+        str = valueCache != null ? getCachedValue(index, lastIndex) : null;
+        if (str == null) {
+          str = decode(index, lastIndex);
+        }
       }
-
-      str = Utils.unescapeString(input, index, lastIndex, cachedBuilder);
       index = lastIndex + 1; // skip quote
       return lastToken = Token.STRING;
     }
 
-    if (isIdentifierStart(ch)) {
+    if (CharClasses.isIdentifierStart(codePointAt(index - 1))) {
       // identifier
-      int pastLastIndex = getPastLastIdentifierIndex(input, index - 1);
-      str = Utils.unescapeString(input, index - 1, pastLastIndex, cachedBuilder);
+      int pastLastIndex = getPastLastIdentifierIndex(index - 1);
+      if (skipStrings && !containsBackslash(index - 1, pastLastIndex)) {
+        final Token token = getLiteralToken(index - 1, pastLastIndex);
+        str = null;
+        index = pastLastIndex;
+        return lastToken = token;
+      }
+      str = keyCache != null ? getCachedKey(index - 1, pastLastIndex) : null;
+      if (str == null) {
+        str = unescape(index - 1, pastLastIndex);
+      }
       index = pastLastIndex;
 
       if (str.equals(NULL_STR)) {
@@ -111,81 +178,518 @@ public class Tokenizer implements Serializable {
       } else if (str.equals(BOOL_FALSE_STR)) {
         return lastToken = Token.FALSE;
       } else if (str.equals(NAN_STR)) {
-        number = Double.NaN;
+        setNumber(Double.NaN);
         return lastToken = Token.NUMBER;
       } else if (str.equals(INFINITY_STR)) {
-        number = Double.POSITIVE_INFINITY;
+        setNumber(Double.POSITIVE_INFINITY);
         return lastToken = Token.NUMBER;
       }
       return lastToken = Token.KEY;
     }
-    if (isFloatingNumberStart(ch)) {
-      boolean inf = false;
-      try {
-        int matchingCount;
-        if (index < length && input[index] == 'I') {
-          // Infinity with + or - sign hence add 1 but index is at the next pos
-          // so remove 1, because just 'Infinity' was checked out
-          // in the previous case
-          matchingCount = INFINITY_STR.length();
-          inf = true;
+    if (CharClasses.isAscii(ch, CharClasses.NUMBER_START)) {
+      index = scanNumber(index - 1);
+      return lastToken = Token.NUMBER;
+    }
+
+    return lastToken = Token.NONE;
+  }
+
+  /**
+   * Strict JSON version of {@link #next()}: only double quoted strings, numbers,
+   * true, false, null and structural characters are recognized. Strings are not
+   * checked against identifier rules, literals are matched without creating
+   * strings and comments are not looked for.
+   *
+   * @return next token or {@link Token#NONE} if the input ended or the next
+   *         token is not a valid JSON token (it may still be a valid JSTP one)
+   */
+  public Token nextJson() throws JSParsingException {
+    return scanJson(valueCache, true);
+  }
+
+  /**
+   * Same as {@link #nextJson()} but strings are cached with the key cache
+   * (see {@link #setKeyCache(StringCache)}), as keys of JSON objects are quoted,
+   * and are never sliced as keys are always Strings
+   */
+  public Token nextJsonKey() throws JSParsingException {
+    return scanJson(keyCache, false);
+  }
+
+  /**
+   * @param sliceable true if the string token may be returned as a slice
+   *                  (see {@link #setStringSlices(boolean)})
+   */
+  private Token scanJson(StringCache cache, boolean sliceable) throws JSParsingException {
+    slice = null;
+    skipWhitespace();
+    if (index >= end) {
+      return lastToken = Token.NONE;
+    }
+    prevIndex = index;
+    final int ch = charAt(index++);
+    switch (ch) {
+      case '[':
+        return lastToken = Token.SQ_OPEN;
+      case ']':
+        return lastToken = Token.SQ_CLOSE;
+      case '{':
+        return lastToken = Token.CURLY_OPEN;
+      case '}':
+        return lastToken = Token.CURLY_CLOSE;
+      case ':':
+        return lastToken = Token.COLON;
+      case ',':
+        return lastToken = Token.COMMA;
+      case '"':
+        final int lastIndex = getClosingQuoteIndex(ch, index);
+        if (skipStrings) {
+          str = null;
+        } else if (hasEscapes) {
+          str = unescape(index, lastIndex);
+        } else if (stringSlices && sliceable
+            && (slice = getSlice(index, lastIndex)) != null) {
+          str = null;
         } else {
-          matchingCount = getMatchingCount(input, index, floatMatchRange);
+          str = cache != null ? getCached(cache, index, lastIndex) : null;
+          if (str == null) {
+            str = decode(index, lastIndex);
+          }
+        }
+        index = lastIndex + 1;
+        return lastToken = Token.STRING;
+      case 't':
+        return scanJsonLiteral(BOOL_TRUE_STR, Token.TRUE);
+      case 'f':
+        return scanJsonLiteral(BOOL_FALSE_STR, Token.FALSE);
+      case 'n':
+        return scanJsonLiteral(NULL_STR, Token.NULL);
+      case '-':
+        if (index < end && CharClasses.isAscii(charAt(index), CharClasses.DIGIT)) {
+          index = scanNumber(index - 1);
+          return lastToken = Token.NUMBER;
         }
-        // add one because index is at the next pos (after ch)
-        str = new String(input, index - 1, matchingCount + 1);
-        // check for number to pass Infinity to else branch
-        if (!inf && str.indexOf('.') == -1) {
-          if (str.length() < MAX_INT_VALUE_LENGTH) {
-            number = Integer.parseInt(str);
-          } else {
-            Long n = Long.parseLong(str);
-            if (n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE) {
-              number = n.intValue();
-            } else {
-              number = n;
-            }
+        break;
+      default:
+        if (CharClasses.isAscii(ch, CharClasses.DIGIT)) {
+          index = scanNumber(index - 1);
+          return lastToken = Token.NUMBER;
+        }
+    }
+    index = prevIndex;
+    return lastToken = Token.NONE;
+  }
+
+  private Token scanJsonLiteral(String literal, Token token) {
+    final int literalEnd = prevIndex + literal.length();
+    if (matches(literal, prevIndex) && (literalEnd == end
+        || !CharClasses.isIdentifierPart(codePointAt(literalEnd)))) {
+      str = null;
+      index = literalEnd;
+      return lastToken = token;
+    }
+    index = prevIndex;
+    return lastToken = Token.NONE;
+  }
+
+  /**
+   * Cheap check of the first characters of the rest of the input: values
+   * starting with a double quote, a digit or '-' and objects starting with
+   * a double quoted key or '}' are likely to be JSON, so are all arrays.
+   * The position of the tokenizer is not changed (except for whitespace).
+   */
+  public boolean looksLikeJson() {
+    skipWhitespace();
+    if (index >= end) {
+      return false;
+    }
+    final int ch = charAt(index);
+    if (ch == '{') {
+      final int start = index++;
+      skipWhitespace();
+      final boolean json = index < end && (charAt(index) == '"' || charAt(index) == '}');
+      index = start;
+      return json;
+    }
+    return ch == '[' || ch == '"' || ch == '-'
+        || CharClasses.isAscii(ch, CharClasses.DIGIT);
+  }
+
+  /**
+   * Skips the rest of the object or array which was opened by the last token
+   * without materializing any of its values. Only the string quotes and
+   * brackets nesting are checked, so no other errors are reported.
+   * After this call the last token will be the matching closing bracket.
+   */
+  public void skipContainer() throws JSParsingException {
+    int depth = 1;
+    while (index < end) {
+      final int ch = charAt(index++);
+      switch (ch) {
+        case '{':
+        case '[':
+          depth++;
+          break;
+        case '}':
+        case ']':
+          if (--depth == 0) {
+            lastToken = ch == '}' ? Token.CURLY_CLOSE : Token.SQ_CLOSE;
+            return;
+          }
+          break;
+        case '"':
+        case '\'':
+          index = getClosingQuoteIndex(ch, index) + 1;
+          break;
+        case '/':
+          if (index < end && charAt(index) == '/') {
+            final int newLineIndex = indexOf('\n', index);
+            index = newLineIndex == -1 ? end : newLineIndex + 1;
+          }
+          break;
+      }
+    }
+    throw new JSParsingException(prevIndex - begin, "Unmatched bracket");
+  }
+
+  /**
+   * @param quote quote character that opened the string
+   * @param from  index right after the opening quote
+   *
+   * @return index of the closing quote
+   */
+  private int getClosingQuoteIndex(int quote, int from) throws JSParsingException {
+    hasEscapes = false;
+    int lastIndex = indexOfQuoteOrBackslash(quote, from);
+    while (lastIndex != -1 && charAt(lastIndex) == '\\') {
+      // skip escaped character whatever it is (quote or another backslash)
+      hasEscapes = true;
+      lastIndex = indexOfQuoteOrBackslash(quote, lastIndex + 2);
+    }
+    if (lastIndex == -1) {
+      throw new JSParsingException(from - 1 - begin, "Unmatched quote");
+    }
+    return lastIndex;
+  }
+
+  private int charAt(int index) {
+    return bytes != null ? bytes[index] & 0xff : input[index];
+  }
+
+  /**
+   * Same as {@link #charAt(int)} but decodes whole UTF-8 sequence for non-ASCII bytes
+   */
+  private int codePointAt(int index) {
+    final int ch = charAt(index);
+    if (ch < 0x80 || bytes == null) {
+      return ch;
+    }
+    return Utils.decodeUtf8(bytes, index, end);
+  }
+
+  private int charCount(int index) {
+    return bytes != null ? Utils.utf8SequenceLength(bytes, index, end) : 1;
+  }
+
+  private int indexOf(int ch, int from) {
+    if (bytes != null) {
+      return Utils.indexOf(bytes, (byte) ch, from, end);
+    }
+    return Utils.indexOf(input, (char) ch, from, end);
+  }
+
+  private boolean containsBackslash(int from, int to) {
+    if (bytes != null) {
+      return Utils.indexOf(bytes, (byte) '\\', from, to) != -1;
+    }
+    return Utils.indexOf(input, '\\', from, to) != -1;
+  }
+
+  private int indexOfQuoteOrBackslash(int quote, int from) {
+    if (bytes != null) {
+      if (words == null || words.array() != bytes) {
+        words = Utils.wordView(bytes);
+      }
+      return Utils.indexOfAny(words, (byte) quote, (byte) '\\', from, end);
+    }
+    return Utils.indexOfAny(input, (char) quote, '\\', from, end);
+  }
+
+  /**
+   * Same as {@link #unescape(int, int)} for the ranges known to contain no backslashes
+   */
+  private String decode(int from, int to) {
+    if (bytes != null) {
+      return new String(bytes, from, to - from, Utils.UTF_8_CHARSET);
+    }
+    return new String(input, from, to - from);
+  }
+
+  private String unescape(int from, int to) throws JSParsingException {
+    if (bytes != null) {
+      return Utils.unescapeString(bytes, from, to, cachedBuilder);
+    }
+    return Utils.unescapeString(input, from, to, cachedBuilder);
+  }
+
+  /**
+   * Scans number literal (with optional sign, fraction and exponent or signed
+   * Infinity and NaN) and stores its value. Numbers without fraction and
+   * exponent are stored as integers if they fit into long.
+   *
+   * @param start index of the first character of the number
+   *
+   * @return index right after the number
+   */
+  private int scanNumber(int start) throws JSParsingException {
+    str = null;
+    int i = start;
+    int ch = charAt(i);
+    final boolean negative = ch == '-';
+    if (ch == '-' || ch == '+') {
+      if (++i < end) {
+        ch = charAt(i);
+        if (ch == 'I') {
+          if (!matches(INFINITY_STR, i)) {
+            throw new JSParsingException(start - begin,
+                "Invalid format: expected Infinity, +Infinity, -Infinity");
+          }
+          setNumber(negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+          return i + INFINITY_STR.length();
+        } else if (ch == 'N' && matches(NAN_STR, i)) {
+          setNumber(Double.NaN);
+          return i + NAN_STR.length();
+        }
+      }
+    }
+
+    long mantissa = 0;
+    int significantDigits = 0;
+    int exp10 = 0;
+    boolean hasDigits = false;
+    boolean truncated = false;
+    boolean integer = true;
+    for (; i < end && isNumber((char) (ch = charAt(i))); i++) {
+      hasDigits = true;
+      if (significantDigits < MAX_EXACT_DIGITS) {
+        mantissa = mantissa * 10 + (ch - '0');
+        if (mantissa != 0) {
+          significantDigits++;
+        }
+      } else {
+        truncated |= ch != '0';
+        exp10++;
+      }
+    }
+    if (i < end && charAt(i) == '.') {
+      integer = false;
+      for (i++; i < end && isNumber((char) (ch = charAt(i))); i++) {
+        hasDigits = true;
+        if (significantDigits < MAX_EXACT_DIGITS) {
+          mantissa = mantissa * 10 + (ch - '0');
+          if (mantissa != 0) {
+            significantDigits++;
           }
+          exp10--;
         } else {
-          number = Double.parseDouble(str);
+          truncated |= ch != '0';
         }
-        index += matchingCount;
-        return lastToken = Token.NUMBER;
+      }
+    }
+    if (!hasDigits) {
+      throw new JSParsingException(start - begin, "Number parsing failed");
+    }
+    if (i < end && (charAt(i) | 0x20) == 'e') {
+      integer = false;
+      i = scanExponent(start, i + 1);
+      exp10 += exponent;
+    }
+
+    if (integer && !truncated && exp10 == 0) {
+      setNumber(negative ? -mantissa : mantissa);
+      return i;
+    }
+    if (integer) {
+      // too many digits to be sure the number fits into long
+      final String literal = substring(start, i);
+      try {
+        setNumber(Long.parseLong(literal));
       } catch (NumberFormatException e) {
-        String errMessage = "Number parsing failed";
-        if (inf) {
-          errMessage = "Invalid format: expected Infinity, +Infinity, -Infinity";
+        setNumber(Double.parseDouble(literal));
+      }
+      return i;
+    }
+    double value = truncated ? Double.NaN : DoubleConverter.toDouble(mantissa, exp10, negative);
+    if (Double.isNaN(value)) {
+      value = Double.parseDouble(substring(start, i));
+    }
+    setNumber(value);
+    return i;
+  }
+
+  private void setNumber(long value) {
+    integerNumber = true;
+    longNumber = value;
+    number = null;
+  }
+
+  private void setNumber(double value) {
+    integerNumber = false;
+    doubleNumber = value;
+    number = null;
+  }
+
+  /**
+   * Scans exponent of the number and stores it in {@link #exponent}
+   *
+   * @param start index of the first character of the number
+   * @param from  index right after the exponent mark
+   *
+   * @return index right after the exponent
+   */
+  private int scanExponent(int start, int from) throws JSParsingException {
+    int i = from;
+    boolean negative = false;
+    if (i < end && (charAt(i) == '-' || charAt(i) == '+')) {
+      negative = charAt(i) == '-';
+      i++;
+    }
+    int value = 0;
+    int ch;
+    final int digitsStart = i;
+    for (; i < end && isNumber((char) (ch = charAt(i))); i++) {
+      if (value < MAX_EXPONENT) {
+        value = value * 10 + (ch - '0');
+      }
+    }
+    if (i == digitsStart) {
+      throw new JSParsingException(start - begin, "Number parsing failed");
+    }
+    exponent = negative ? -value : value;
+    return i;
+  }
+
+  /**
+   * @return literal token (null, true, NaN etc.) that is equal to the identifier
+   *         in range [{@param from}, {@param to}) or {@link Token#KEY} for all others
+   */
+  private Token getLiteralToken(int from, int to) {
+    final int length = to - from;
+    if (length == NULL_STR.length() && matches(NULL_STR, from)) {
+      return Token.NULL;
+    } else if (length == UNDEFINED_STR.length() && matches(UNDEFINED_STR, from)) {
+      return Token.UNDEFINED;
+    } else if (length == BOOL_TRUE_STR.length() && matches(BOOL_TRUE_STR, from)) {
+      return Token.TRUE;
+    } else if (length == BOOL_FALSE_STR.length() && matches(BOOL_FALSE_STR, from)) {
+      return Token.FALSE;
+    } else if (length == NAN_STR.length() && matches(NAN_STR, from)) {
+      setNumber(Double.NaN);
+      return Token.NUMBER;
+    } else if (length == INFINITY_STR.length() && matches(INFINITY_STR, from)) {
+      setNumber(Double.POSITIVE_INFINITY);
+      return Token.NUMBER;
+    }
+    return Token.KEY;
+  }
+
+  private boolean matches(String str, int from) {
+    final int length = str.length();
+    if (end - from < length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (charAt(from + i) != str.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String getCachedKey(int from, int to) {
+    return getCached(keyCache, from, to);
+  }
+
+  /**
+   * @return slice of the input in range [{@param from}, {@param to}) or null if
+   *         the input is the internal buffer (that will be reused) or the range
+   *         is not ASCII-only UTF-8
+   */
+  private JSStringSlice getSlice(int from, int to) {
+    if (bytes != null) {
+      if (bytes == byteBuffer) {
+        return null;
+      }
+      for (int i = from; i < to; i++) {
+        if (bytes[i] < 0) {
+          return null;
         }
-        throw new JSParsingException(index - 1, errMessage, e);
       }
+      return new JSStringSlice(bytes, from, to - from);
+    }
+    return input == charBuffer ? null : new JSStringSlice(input, from, to - from);
+  }
+
+  private String getCachedValue(int from, int to) {
+    return getCached(valueCache, from, to);
+  }
+
+  private String getCached(StringCache cache, int from, int to) {
+    if (bytes != null) {
+      return cache.get(bytes, from, to);
     }
+    return cache.get(input, from, to);
+  }
 
-    return lastToken = Token.NONE;
+  private String substring(int from, int to) {
+    if (bytes != null) {
+      return new String(bytes, from, to - from, Utils.ASCII_CHARSET);
+    }
+    return new String(input, from, to - from);
   }
 
-  private int indexOf(char ch, int from) {
-    return Utils.indexOf(input, ch, from, length);
+  private void skipWhitespace() {
+    while (index < end) {
+      final int ch = charAt(index);
+      if (ch < 0x80) {
+        // ASCII fast path, no need to decode anything
+        if (!CharClasses.isAscii(ch, CharClasses.WHITESPACE)) {
+          return;
+        }
+        index++;
+      } else if (CharClasses.isWhitespace(codePointAt(index))) {
+        index += charCount(index);
+      } else {
+        return;
+      }
+    }
   }
 
-  private int getPastLastIdentifierIndex(char[] input, int index) throws JSParsingException {
-    while (index < length) {
-      char ch = input[index];
+  private int getPastLastIdentifierIndex(int index) throws JSParsingException {
+    while (index < end) {
+      int ch = charAt(index);
       if (ch == '\\'
-          && index + 1 < length
-          && input[index + 1] == 'u') {
+          && index + 1 < end
+          && charAt(index + 1) == 'u') {
         int nextIndex = -1;
-        if (index + 2 < length
-            && input[index + 2] == '{') {
+        if (index + 2 < end
+            && charAt(index + 2) == '{') {
           nextIndex = indexOf('}', index + 3);
-        } else if (index + 5 < length) {
+        } else if (index + 5 < end) {
           nextIndex = index + 4;
         }
         if (nextIndex >= 0) {
           index = nextIndex;
         } else {
-          throw new JSParsingException(index, "Invalid unicode escape character sequence");
+          throw new JSParsingException(index - begin,
+              "Invalid unicode escape character sequence");
         }
-      } else if (!isIdentifierPart(ch)) {
+      } else if (ch >= 0x80 && bytes != null) {
+        if (!CharClasses.isIdentifierPart(Utils.decodeUtf8(bytes, index, end))) {
+          break;
+        }
+        index += charCount(index) - 1;
+      } else if (!CharClasses.isIdentifierPart(ch)) {
         break;
       }
       ++index;
@@ -193,40 +697,16 @@ public class Tokenizer implements Serializable {
     return index;
   }
 
-  private int getPastLastIndex(char[] input, int index, MatchRange matcher) {
-    while (index < length && matcher.matches(input[index])) {
-      ++index;
-    }
-    return index;
-  }
-
-  private int getMatchingCount(char[] input, int index, MatchRange matcher) {
-    int count = 0;
-    while (index < length && matcher.matches(input[index])) {
-      ++index;
-      ++count;
-    }
-    return count;
-  }
-
-  private static boolean isIdentifierStart(char ch) {
-    return Character.isUnicodeIdentifierStart(ch) || ch == '_' || ch == '$' || ch == '\\';
-  }
-
-  private static boolean isIdentifierPart(char ch) {
-    return Character.isUnicodeIdentifierPart(ch) || ch == '_' || ch == '$';
-  }
-
   public static boolean isLetter(char ch) {
-    return LETTER_LOWER_RANGE.contains(ch) || LETTER_UPPER_RANGE.contains(ch);
+    return CharClasses.isAscii(ch, CharClasses.LETTER);
   }
 
   public static boolean isNumber(char ch) {
-    return NUMBER_RANGE.contains(ch);
+    return CharClasses.isAscii(ch, CharClasses.DIGIT);
   }
 
   public static boolean isFloatingNumberStart(char ch) {
-    return isNumber(ch) || ch == '.' || ch == '+' || ch == '-';
+    return CharClasses.isAscii(ch, CharClasses.NUMBER_START);
   }
 
   public static boolean isFloatingNumber(char ch) {
@@ -234,54 +714,238 @@ public class Tokenizer implements Serializable {
   }
 
   public String getStr() {
-    if (str == null && lastToken == Token.NUMBER) {
-      str = String.valueOf(number);
+    if (str == null) {
+      if (slice != null) {
+        str = slice.toString();
+      } else if (lastToken == Token.NUMBER) {
+        // keep the source text of the number (e.g. numeric keys like 1.50)
+        str = substring(prevIndex, index);
+      }
     }
     return str;
   }
 
+  /**
+   * @return value of the last string token as {@link JSStringSlice} if it was
+   *         sliced (see {@link #setStringSlices(boolean)}) or same as {@link #getStr()}
+   */
+  public CharSequence getCharSequence() {
+    return slice != null ? slice : getStr();
+  }
+
+  /**
+   * @return value of the last number token as Integer or Long for integers
+   *         (depending on the value) and as Double for all other numbers
+   */
   public Number getNumber() {
+    if (number == null) {
+      if (!integerNumber) {
+        number = doubleNumber;
+      } else if (longNumber >= Integer.MIN_VALUE && longNumber <= Integer.MAX_VALUE) {
+        number = (int) longNumber;
+      } else {
+        number = longNumber;
+      }
+    }
     return number;
   }
 
+  /**
+   * @return true if the last number token is an integer that fits into long
+   */
+  public boolean isIntegerNumber() {
+    return integerNumber;
+  }
+
+  /**
+   * @return value of the last number token if it is an integer (see {@link #isIntegerNumber()})
+   */
+  public long getLongNumber() {
+    return longNumber;
+  }
+
+  /**
+   * @return value of the last number token as double without boxing
+   */
+  public double getDoubleNumber() {
+    return integerNumber ? longNumber : doubleNumber;
+  }
+
+  public StringCache getKeyCache() {
+    return keyCache;
+  }
+
+  /**
+   * Sets cache to be used for identifiers (mainly unquoted keys), so that
+   * repeated identifiers share the same String instance
+   *
+   * @param keyCache cache to be used or null to disable caching (default)
+   */
+  public void setKeyCache(StringCache keyCache) {
+    this.keyCache = keyCache;
+  }
+
+  public StringCache getValueCache() {
+    return valueCache;
+  }
+
+  /**
+   * Sets cache to be used for string values without escape sequences, so that
+   * repeated values (e.g. enum-like ones) share the same String instance
+   *
+   * @param valueCache cache to be used or null to disable caching (default)
+   */
+  public void setValueCache(StringCache valueCache) {
+    this.valueCache = valueCache;
+  }
+
+  public boolean isStringSlices() {
+    return stringSlices;
+  }
+
+  /**
+   * If set, values of the string tokens without escape sequences are returned by
+   * {@link #getCharSequence()} as {@link JSStringSlice} backed by the input array
+   * instead of being copied. Slices are only created for the arrays passed to
+   * {@link #setInput(char[], int, int)} and {@link #setInput(byte[], int, int)}
+   * (for the latter only ASCII ones), never for the internal buffers Strings and
+   * direct ByteBuffers are copied to, so they stay valid until the input array
+   * is modified.
+   *
+   * @param stringSlices true to enable slices, disabled by default
+   */
+  public void setStringSlices(boolean stringSlices) {
+    this.stringSlices = stringSlices;
+  }
+
+  public boolean isSkipStrings() {
+    return skipStrings;
+  }
+
+  /**
+   * If set, string and identifier tokens are only delimited (see {@link #getPrevIndex()}
+   * and {@link #getIndex()}) without decoding their values, so {@link #getStr()}
+   * returns null for them. Literals like true or null are still recognized.
+   */
+  public void setSkipStrings(boolean skipStrings) {
+    this.skipStrings = skipStrings;
+  }
+
   public Token getLastToken() {
     return lastToken;
   }
 
+  /**
+   * @return index of the last token relative to the beginning of the input
+   */
   public int getPrevIndex() {
-    return prevIndex;
+    return prevIndex - begin;
+  }
+
+  /**
+   * @return index right after the last token relative to the beginning of the input
+   */
+  public int getIndex() {
+    return index - begin;
+  }
+
+  /**
+   * Moves the tokenizer back (or forth) to the {@param index} relative to the
+   * beginning of the input, e.g. to tokenize the same part of the input again
+   */
+  public void setIndex(int index) {
+    this.index = this.prevIndex = begin + index;
+    lastToken = Token.NONE;
   }
 
   public void setInput(String input) {
+    final int length = input.length();
+    if (charBuffer.length < length) {
+      charBuffer = new char[length];
+    }
+    input.getChars(0, length, charBuffer, 0);
+    setInput(charBuffer, 0, length);
+  }
+
+  /**
+   * Sets {@param input} to be tokenized, the array is used directly
+   * so it must not be modified until tokenizing is finished
+   *
+   * @param input  characters to tokenize
+   * @param offset index of the first character of the input
+   * @param length number of characters in the input
+   */
+  public void setInput(char[] input, int offset, int length) {
     reset();
-    try {
-      if (valueReflection != null) {
-        this.input = (char[]) valueReflection.get(input);
-      } else {
-        this.input = input.toCharArray();
-      }
-      this.length = input.length();
-    } catch (IllegalAccessException e) {
-      throw new RuntimeException("Cannot access string internal array", e);
+    this.input = input;
+    this.begin = offset;
+    this.index = offset;
+    this.end = offset + length;
+  }
+
+  /**
+   * Sets UTF-8 encoded {@param input} to be tokenized, the array is used directly
+   * (only string tokens get decoded) so it must not be modified until tokenizing is finished
+   *
+   * @param input  UTF-8 encoded bytes to tokenize
+   * @param offset index of the first byte of the input
+   * @param length number of bytes in the input
+   */
+  public void setInput(byte[] input, int offset, int length) {
+    reset();
+    this.bytes = input;
+    this.begin = offset;
+    this.index = offset;
+    this.end = offset + length;
+  }
+
+  /**
+   * Sets UTF-8 encoded bytes between {@link ByteBuffer#position()} and
+   * {@link ByteBuffer#limit()} of {@param input} to be tokenized without changing
+   * buffer position. Array-backed buffers are used directly, others are copied
+   * into internal reusable buffer.
+   *
+   * @param input buffer containing UTF-8 encoded bytes to tokenize
+   */
+  public void setInput(ByteBuffer input) {
+    final int length = input.remaining();
+    if (input.hasArray()) {
+      setInput(input.array(), input.arrayOffset() + input.position(), length);
+      return;
+    }
+    if (byteBuffer.length < length) {
+      byteBuffer = new byte[length];
+    }
+    input.duplicate().get(byteBuffer, 0, length);
+    setInput(byteBuffer, 0, length);
+  }
+
+  /**
+   * Drops references to the input so that it can be garbage collected,
+   * internal buffers are kept for reuse unless they are too big
+   */
+  public void clearInput() {
+    reset();
+    words = null;
+    if (charBuffer.length > MAX_RETAINED_BUFFER_SIZE) {
+      charBuffer = new char[0];
+    }
+    if (byteBuffer.length > MAX_RETAINED_BUFFER_SIZE) {
+      byteBuffer = new byte[0];
     }
   }
 
   private void reset() {
-    number = 0;
+    setNumber(0);
     str = null;
+    slice = null;
     input = null;
+    bytes = null;
+    begin = 0;
+    end = 0;
     index = 0;
     prevIndex = 0;
     lastToken = null;
-    length = 0;
-  }
-
-  private static class FloatMatchRange implements MatchRange {
-
-    @Override
-    public boolean matches(char ch) {
-      return isNumber(ch) || ch == '.';
-    }
   }
 
   public interface MatchRange {
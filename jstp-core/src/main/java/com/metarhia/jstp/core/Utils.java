@@ -1,7 +1,31 @@
 package com.metarhia.jstp.core;
 
+import com.metarhia.jstp.core.Tokens.Token;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
 public final class Utils {
 
+  public static final Charset UTF_8_CHARSET = Charset.forName("UTF-8");
+
+  public static final Charset ASCII_CHARSET = Charset.forName("US-ASCII");
+
+  /**
+   * Replacement character used for malformed UTF-8 sequences
+   */
+  private static final char REPLACEMENT_CHAR = '\ufffd';
+
+  /**
+   * Ranges shorter than this are scanned byte by byte in {@link #indexOfAny}
+   */
+  private static final int MIN_WORD_SCAN_LENGTH = 16;
+
+  private static final long LOW_BITS = 0x0101010101010101L;
+
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
   private static final String[] CONTROL_CHARS = {
       "\\u0000", "\\u0001", "\\u0002",
       "\\u0003", "\\u0004", "\\u0005",
@@ -16,6 +40,17 @@ public final class Utils {
       "\\u001e", "\\u001f"
   };
 
+  /**
+   * Tokenizers reused by {@link #charArrayToDouble(char[], int, int, int[])},
+   * so that numbers are scanned without any allocations
+   */
+  private static final ThreadLocal<Tokenizer> threadTokenizer = new ThreadLocal<Tokenizer>() {
+    @Override
+    protected Tokenizer initialValue() {
+      return new Tokenizer();
+    }
+  };
+
   private Utils() {
   }
 
@@ -23,18 +58,42 @@ public final class Utils {
     return escapeString(input, new StringBuilder()).toString();
   }
 
+  /**
+   * Same as {@link #escapeString(CharSequence, StringBuilder)}, kept for the
+   * binary compatibility with the code compiled against this signature
+   */
   public static StringBuilder escapeString(String input, StringBuilder builder) {
-    builder.ensureCapacity(builder.length() + input.length());
-    for (int i = 0; i < input.length(); i++) {
+    return escapeString((CharSequence) input, builder);
+  }
+
+  /**
+   * Appends {@param input} to the {@param builder} escaping characters that can't
+   * be in single quoted strings (see {@link #getEscapedCharacter(char)}). Runs of
+   * characters that need no escaping are appended at once, so are the whole
+   * strings without such characters.
+   */
+  public static StringBuilder escapeString(CharSequence input, StringBuilder builder) {
+    final int length = input.length();
+    int runStart = 0;
+    for (int i = 0; i < length; i++) {
       final char c = input.charAt(i);
-      String escaped = getEscapedCharacter(c);
-      if (escaped == null) {
-        builder.append(c);
-      } else {
-        builder.append(escaped);
+      // only control chars, quote, backslash and DEL are escaped
+      if (c > '\'' && c != '\\' && c != 0x7f) {
+        continue;
+      }
+      final String escaped = getEscapedCharacter(c);
+      if (escaped != null) {
+        if (runStart == 0) {
+          builder.ensureCapacity(builder.length() + length + escaped.length());
+        }
+        builder.append(input, runStart, i).append(escaped);
+        runStart = i + 1;
       }
     }
-    return builder;
+    if (runStart == 0) {
+      return builder.append(input);
+    }
+    return builder.append(input, runStart, length);
   }
 
   public static String getEscapedCharacter(char c) {
@@ -91,6 +150,33 @@ public final class Utils {
     return builder.toString();
   }
 
+  /**
+   * Same as {@link #unescapeString(char[], int, int, StringBuilder)} but works
+   * on UTF-8 encoded {@param input}, only the bytes in range
+   * [{@param fromIndex}, {@param maxIndex}) are decoded
+   */
+  public static String unescapeString(byte[] input, int fromIndex,
+                                      int maxIndex, StringBuilder builder)
+      throws JSParsingException {
+    int backslash = fromIndex;
+    int index = indexOf(input, (byte) '\\', backslash, maxIndex);
+    if (index < 0) {
+      return new String(input, fromIndex, maxIndex - fromIndex, UTF_8_CHARSET);
+    }
+    builder.setLength(0);
+    builder.ensureCapacity(maxIndex - fromIndex);
+    while (index >= 0) {
+      index++;
+      appendUtf8(input, backslash, index - 1, builder);
+      backslash = index + addControlChar(input, index, maxIndex, builder);
+      index = indexOf(input, (byte) '\\', backslash, maxIndex);
+    }
+    if (backslash < maxIndex) {
+      appendUtf8(input, backslash, maxIndex, builder);
+    }
+    return builder.toString();
+  }
+
   public static int addControlChar(char[] input, int start, StringBuilder dst)
       throws JSParsingException {
     int codePoint;
@@ -152,40 +238,235 @@ public final class Utils {
     }
   }
 
-  public static double charArrayToDouble(char[] data, int start, int length, int[] end) {
-    boolean neg = false;
-    if (data[start] == '-') {
-      neg = true;
-      start++;
-    } else if (data[start] == '+') {
-      start++;
+  public static int addControlChar(byte[] input, int start, int maxIndex, StringBuilder dst)
+      throws JSParsingException {
+    int codePoint;
+    final int ch = input[start] & 0xff;
+    switch (ch) {
+      case '"':
+        dst.append('"');
+        return 1;
+      case '\'':
+        dst.append('\'');
+        return 1;
+      case 'b':
+        dst.append('\b');
+        return 1;
+      case 'f':
+        dst.append('\f');
+        return 1;
+      case 'n':
+        dst.append('\n');
+        return 1;
+      case 'r':
+        dst.append('\r');
+        return 1;
+      case 't':
+        dst.append('\t');
+        return 1;
+      case '0':
+        dst.append('\0');
+        return 1;
+      case 'x':
+        codePoint = Integer.parseInt(new String(input, start + 1, 2, ASCII_CHARSET), 16);
+        dst.append(Character.toChars(codePoint));
+        return 3;
+      case 'u':
+        try {
+          start++;
+          if (isHex((char) input[start])) {
+            codePoint = Integer.parseInt(new String(input, start, 4, ASCII_CHARSET), 16);
+            dst.append(Character.toChars(codePoint));
+            return 5;
+          } else if (input[start] == '{') {
+            int i = ++start;
+            while (isHex((char) input[i])) {
+              i++;
+            }
+            i -= start;
+            codePoint = Integer.parseInt(new String(input, start, i, ASCII_CHARSET), 16);
+            dst.append(Character.toChars(codePoint));
+            return i + 3;
+          } else {
+            throw new JSParsingException(start + 1, "Invalid Unicode escape sequence");
+          }
+        } catch (NumberFormatException e) {
+          throw new JSParsingException(start + 1, "Invalid Unicode escape sequence", e);
+        }
+      default:
+        if (ch < 0x80) {
+          dst.append((char) ch);
+          return 1;
+        }
+        // escaped non-ASCII character just stands for itself
+        dst.appendCodePoint(decodeUtf8(input, start, maxIndex));
+        return utf8SequenceLength(input, start, maxIndex);
     }
+  }
 
-    long value = 0;
-    int i;
-    int dotIndex = -1;
-    int powerMod = 0;
-    for (i = start; i < length; i++) {
-      final char ch = data[i];
-      if (ch >= '0' && ch <= '9') {
-        powerMod++;
-        value = value * 10 + (ch - '0');
-      } else if (ch == '.' && dotIndex < 0) {
-        dotIndex = i;
-      } else if (ch == 'e' || ch == 'E') {
-        powerMod -= charArrayToInt(data, i + 1, length, end);
-        break;
+  /**
+   * Decodes UTF-8 encoded bytes in range [{@param fromIndex}, {@param maxIndex})
+   * of {@param input} and appends them to {@param dst}, malformed sequences are
+   * replaced with U+FFFD
+   */
+  public static StringBuilder appendUtf8(byte[] input, int fromIndex, int maxIndex,
+                                         StringBuilder dst) {
+    int i = fromIndex;
+    while (i < maxIndex) {
+      final byte b = input[i];
+      if (b >= 0) {
+        dst.append((char) b);
+        i++;
       } else {
-        break;
+        dst.appendCodePoint(decodeUtf8(input, i, maxIndex));
+        i += utf8SequenceLength(input, i, maxIndex);
       }
     }
-    end[0] = i;
-    if (dotIndex < 0) {
-      dotIndex = i;
+    return dst;
+  }
+
+  /**
+   * Decodes single code point from UTF-8 sequence starting at {@param index}
+   *
+   * @return decoded code point or U+FFFD if the sequence is malformed
+   */
+  public static int decodeUtf8(byte[] input, int index, int maxIndex) {
+    final int b = input[index];
+    if (b >= 0) {
+      return b;
+    }
+    final int length = utf8SequenceLength(input, index, maxIndex);
+    if (length == 1) {
+      return REPLACEMENT_CHAR;
+    }
+    int codePoint = b & (0xff >> (length + 1));
+    for (int i = 1; i < length; i++) {
+      codePoint = (codePoint << 6) | (input[index + i] & 0x3f);
+    }
+    return codePoint;
+  }
+
+  /**
+   * Gets length of UTF-8 sequence starting at {@param index}, malformed or
+   * truncated sequences are reported as having length 1 so that they can be
+   * skipped byte by byte
+   */
+  public static int utf8SequenceLength(byte[] input, int index, int maxIndex) {
+    final int b = input[index] & 0xff;
+    int length;
+    if (b < 0x80) {
+      return 1;
+    } else if ((b & 0xe0) == 0xc0) {
+      length = 2;
+    } else if ((b & 0xf0) == 0xe0) {
+      length = 3;
+    } else if ((b & 0xf8) == 0xf0) {
+      length = 4;
+    } else {
+      return 1;
+    }
+    if (index + length > maxIndex) {
+      return 1;
+    }
+    for (int i = 1; i < length; i++) {
+      if ((input[index + i] & 0xc0) != 0x80) {
+        return 1;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * @return number of bytes in UTF-8 encoding of the characters in range
+   *         [{@param fromIndex}, {@param maxIndex}) of {@param input}
+   *         (see {@link #encodeUtf8(CharSequence, int, int, byte[], int)})
+   */
+  public static int utf8Length(CharSequence input, int fromIndex, int maxIndex) {
+    int length = maxIndex - fromIndex;
+    for (int i = fromIndex; i < maxIndex; i++) {
+      final char ch = input.charAt(i);
+      if (ch < 0x80) {
+        continue;
+      }
+      if (ch < 0x800) {
+        length++;
+      } else if (!Character.isSurrogate(ch)) {
+        length += 2;
+      } else if (isSurrogatePair(input, i, maxIndex)) {
+        // 4 bytes for 2 chars
+        length += 2;
+        i++;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Encodes characters in range [{@param fromIndex}, {@param maxIndex}) of
+   * {@param input} as UTF-8 into {@param output} starting at {@param offset},
+   * unpaired surrogates are replaced with '?' (same as {@link String#getBytes})
+   *
+   * @return number of bytes written, the array must have enough room for them
+   *         (see {@link #utf8Length(CharSequence, int, int)})
+   */
+  public static int encodeUtf8(CharSequence input, int fromIndex, int maxIndex,
+                               byte[] output, int offset) {
+    int j = offset;
+    for (int i = fromIndex; i < maxIndex; i++) {
+      final char ch = input.charAt(i);
+      if (ch < 0x80) {
+        output[j++] = (byte) ch;
+      } else if (ch < 0x800) {
+        output[j++] = (byte) (0xc0 | ch >> 6);
+        output[j++] = (byte) (0x80 | ch & 0x3f);
+      } else if (!Character.isSurrogate(ch)) {
+        output[j++] = (byte) (0xe0 | ch >> 12);
+        output[j++] = (byte) (0x80 | ch >> 6 & 0x3f);
+        output[j++] = (byte) (0x80 | ch & 0x3f);
+      } else if (isSurrogatePair(input, i, maxIndex)) {
+        final int codePoint = Character.toCodePoint(ch, input.charAt(++i));
+        output[j++] = (byte) (0xf0 | codePoint >> 18);
+        output[j++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        output[j++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        output[j++] = (byte) (0x80 | codePoint & 0x3f);
+      } else {
+        output[j++] = '?';
+      }
+    }
+    return j - offset;
+  }
+
+  private static boolean isSurrogatePair(CharSequence input, int index, int maxIndex) {
+    return Character.isHighSurrogate(input.charAt(index))
+        && index + 1 < maxIndex && Character.isLowSurrogate(input.charAt(index + 1));
+  }
+
+  /**
+   * Parses number starting at {@param start} in {@param data} and ending before
+   * {@param length} index (or earlier, if the number ends earlier)
+   *
+   * @param end array to store index right after the number at
+   *
+   * @return parsed number
+   *
+   * @throws NumberFormatException if there is no valid number at {@param start}
+   */
+  public static double charArrayToDouble(char[] data, int start, int length, int[] end)
+      throws NumberFormatException {
+    final Tokenizer tokenizer = threadTokenizer.get();
+    tokenizer.setInput(data, start, length - start);
+    try {
+      if (tokenizer.next() != Token.NUMBER || tokenizer.getPrevIndex() != 0) {
+        throw new NumberFormatException(
+            "Not a number: " + new String(data, start, length - start));
+      }
+      end[0] = start + tokenizer.getIndex();
+      return tokenizer.getDoubleNumber();
+    } catch (JSParsingException e) {
+      throw new NumberFormatException(e.getMessage());
+    } finally {
+      tokenizer.clearInput();
     }
-    powerMod -= dotIndex - start;
-    double result = value / Math.pow(10, powerMod);
-    return neg ? -result : result;
   }
 
   public static int charArrayToInt(char[] data, int start, int length, int[] end)
@@ -219,6 +500,96 @@ public final class Utils {
     return -1;
   }
 
+  public static int indexOf(byte[] input, byte b, int from, int max) {
+    for (int i = from; i < max; i++) {
+      if (input[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return index of the first occurrence of either {@param first} or {@param second}
+   *         in range [{@param from}, {@param max}) of the {@param input} or -1 if
+   *         there is none
+   */
+  public static int indexOfAny(char[] input, char first, char second, int from, int max) {
+    for (int i = from; i < max; i++) {
+      final char ch = input[i];
+      if (ch == first || ch == second) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Same as {@link #indexOfAny(char[], char, char, int, int)} for bytes, long
+   * ranges are scanned with {@link #indexOfAny(ByteBuffer, byte, byte, int, int)}
+   * (callers that search the same array repeatedly should reuse its view instead,
+   * see {@link #wordView(byte[])})
+   */
+  public static int indexOfAny(byte[] input, byte first, byte second, int from, int max) {
+    if (max - from >= MIN_WORD_SCAN_LENGTH) {
+      return indexOfAny(wordView(input), first, second, from, max);
+    }
+    for (int i = from; i < max; i++) {
+      final byte b = input[i];
+      if (b == first || b == second) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Same as {@link #indexOfAny(byte[], byte, byte, int, int)} for the bytes of
+   * the {@param words} view (created by {@link #wordView(byte[])}) but checks
+   * 8 bytes per step: each word is xor-ed with both bytes spread over all of its
+   * lanes, so matching lanes become zero and are found with the carry trick
+   * (see {@link #zeroBytes(long)}). Indices are absolute, position and limit
+   * of the view are ignored.
+   */
+  public static int indexOfAny(ByteBuffer words, byte first, byte second, int from, int max) {
+    int i = from;
+    if (max - from >= MIN_WORD_SCAN_LENGTH) {
+      final long firstLanes = (first & 0xffL) * LOW_BITS;
+      final long secondLanes = (second & 0xffL) * LOW_BITS;
+      for (final int lastWord = max - 8; i <= lastWord; i += 8) {
+        final long word = words.getLong(i);
+        final long found = zeroBytes(word ^ firstLanes) | zeroBytes(word ^ secondLanes);
+        if (found != 0) {
+          return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+      }
+    }
+    for (; i < max; i++) {
+      final byte b = words.get(i);
+      if (b == first || b == second) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return little-endian view of {@param input} to be used with
+   *         {@link #indexOfAny(ByteBuffer, byte, byte, int, int)}
+   */
+  public static ByteBuffer wordView(byte[] input) {
+    return ByteBuffer.wrap(input).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * @return word with the high bit set in the lowest zero byte of {@param word};
+   *         bits of the higher bytes may be set spuriously by the borrow, so only
+   *         the lowest set bit is meaningful
+   */
+  private static long zeroBytes(long word) {
+    return (word - LOW_BITS) & ~word & HIGH_BITS;
+  }
+
   private static boolean isHex(char character) {
     return (character >= '0' && character <= '9')
         || (character >= 'A' && character <= 'F')
@@ -0,0 +1,106 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JSBinderTest {
+
+  enum Role {
+    ADMIN, USER
+  }
+
+  static class Entity {
+
+    long id;
+  }
+
+  static class User extends Entity {
+
+    static int ignoredStatic;
+
+    private String name;
+    private int age;
+    private double rating;
+    private boolean active;
+    private Integer level;
+    private char initial;
+    private Role role;
+    private List<String> tags;
+    private int[] scores;
+    private List<User> friends;
+    private Map<String, Object> extra;
+    private Object any;
+    private transient String ignored = "ignored";
+
+    private User() {
+    }
+  }
+
+  static class NoDefaultConstructor {
+
+    NoDefaultConstructor(int value) {
+    }
+  }
+
+  @Test
+  void parse() throws Exception {
+    final String input = "{id: 23051225940000, name: 'Marcus', age: 54.9, rating: 4, "
+        + "active: true, level: null, initial: 'M', role: 'ADMIN', tags: ['emperor', ,'stoic'], "
+        + "scores: [1, 2, 3], unknown: {a: [1, {b: 2}]}, "
+        + "friends: [{name: 'Lucius', friends: [], extra: {x: 1}}], extra: {a: [1]}, "
+        + "any: [1, 'a'], ignored: 'set', ignoredStatic: 1}";
+
+    final User user = JSBinder.parse(input, User.class);
+
+    assertEquals(23051225940000L, user.id);
+    assertEquals("Marcus", user.name);
+    assertEquals(54, user.age);
+    assertEquals(4.0, user.rating, 0);
+    assertEquals(true, user.active);
+    assertNull(user.level);
+    assertEquals('M', user.initial);
+    assertEquals(Role.ADMIN, user.role);
+    assertEquals(Arrays.asList("emperor", null, "stoic"), user.tags);
+    assertArrayEquals(new int[]{1, 2, 3}, user.scores);
+    assertEquals(1, user.friends.size());
+    assertEquals("Lucius", user.friends.get(0).name);
+    assertEquals(0, user.friends.get(0).friends.size());
+    assertEquals(JSParser.parse("{x: 1}"), user.friends.get(0).extra);
+    assertEquals(JSParser.parse("{a: [1]}"), user.extra);
+    assertEquals(JSParser.parse("[1, 'a']"), user.any);
+    assertEquals("ignored", user.ignored);
+    assertEquals(0, User.ignoredStatic);
+
+    final byte[] bytes = input.getBytes(Utils.UTF_8_CHARSET);
+    assertEquals("Marcus", JSBinder.parse(bytes, 0, bytes.length, User.class).name);
+  }
+
+  @Test
+  void parseScalarsAndArrays() throws Exception {
+    assertEquals("str", JSBinder.parse("'str'", String.class));
+    assertEquals(Long.valueOf(5), JSBinder.parse("5", Long.class));
+    assertNull(JSBinder.parse("null", User.class));
+    assertArrayEquals(new String[]{"a", "b"}, JSBinder.parse("['a', 'b']", String[].class));
+    final User[] users = JSBinder.parse("[{age: 1}, {age: 2}]", User[].class);
+    assertEquals(2, users[1].age);
+  }
+
+  @Test
+  void parseThrow() throws Exception {
+    final JSParsingException typeError = assertThrows(JSParsingException.class,
+        () -> JSBinder.parse("{age: 'old'}", User.class));
+    assertEquals(6, typeError.getErrorOffset());
+    assertThrows(JSParsingException.class, () -> JSBinder.parse("{role: 'GUEST'}", User.class));
+    assertThrows(JSParsingException.class, () -> JSBinder.parse("{tags: {}}", User.class));
+    assertThrows(JSParsingException.class, () -> JSBinder.parse("{name: 'a' age: 1}", User.class));
+    assertThrows(IllegalArgumentException.class,
+        () -> JSBinder.parse("{}", NoDefaultConstructor.class));
+  }
+}
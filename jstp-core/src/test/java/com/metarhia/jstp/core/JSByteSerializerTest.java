@@ -0,0 +1,68 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class JSByteSerializerTest {
+
+  private static final String INPUT = "{имя: 'Марк Аврелий', emoji: '\\u{1F49A} 💛', "
+      + "list: [1, 2.5, true, null, undefined], lone: '\\uD800'}";
+
+  private final JSByteSerializer serializer = new JSByteSerializer();
+
+  private static byte[] expectedBytes(Object value) {
+    return JSSerializer.stringify(value).getBytes(Utils.UTF_8_CHARSET);
+  }
+
+  @Test
+  void serialize() throws Exception {
+    final Object value = JSParser.parse(INPUT);
+    final byte[] expected = expectedBytes(value);
+
+    final int length = serializer.serialize(value);
+    assertArrayEquals(expected, Arrays.copyOf(serializer.getBuffer(), length));
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serializer.serialize(value, out);
+    serializer.serialize(value, out);
+    final byte[] twice = Arrays.copyOf(expected, expected.length * 2);
+    System.arraycopy(expected, 0, twice, expected.length, expected.length);
+    assertArrayEquals(twice, out.toByteArray());
+  }
+
+  @Test
+  void serializeToByteBuffer() throws Exception {
+    final Object value = JSParser.parse(INPUT);
+    final byte[] expected = expectedBytes(value);
+
+    for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(expected.length + 2),
+        ByteBuffer.allocateDirect(expected.length + 2)}) {
+      buffer.put((byte) '[');
+      serializer.serialize(value, buffer);
+      assertEquals(expected.length + 1, buffer.position());
+      assertThrows(BufferOverflowException.class, () -> serializer.serialize(value, buffer));
+      assertEquals(expected.length + 1, buffer.position());
+
+      buffer.flip().position(1);
+      final byte[] result = new byte[buffer.remaining()];
+      buffer.get(result);
+      assertArrayEquals(expected, result);
+    }
+  }
+
+  @Test
+  void encodeWithTerminator() throws Exception {
+    final String message = "{call:[1,'auth'],connect:['кто']}";
+    final int length = serializer.encode(message, (byte) '\0');
+
+    final byte[] expected = (message + '\0').getBytes(Utils.UTF_8_CHARSET);
+    assertArrayEquals(expected, Arrays.copyOf(serializer.getBuffer(), length));
+  }
+}
@@ -0,0 +1,59 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSNetworkParser.FrameListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class JSNetworkParserTest {
+
+  private static final String FIRST = "{callback:[17],ok:[15703]}";
+
+  private static final String SECOND = "{event:[18,'auth'],insert:['Marcus Aurelius','AE127095']}";
+
+  @Test
+  void parse() throws Exception {
+    final byte[] packet = (FIRST + '\0' + '\0' + SECOND + '\0' + "{call")
+        .getBytes(Utils.UTF_8_CHARSET);
+    final byte[] buffer = Arrays.copyOf(packet, packet.length + 64);
+    final int[] length = {packet.length};
+
+    final List<JSObject> messages = JSNetworkParser.parse(buffer, length);
+
+    assertEquals(Arrays.asList(JSParser.<JSObject>parse(FIRST),
+        JSParser.<JSObject>parse(SECOND)), messages);
+    assertEquals(5, length[0]);
+    assertEquals("{call", new String(buffer, 0, length[0], Utils.UTF_8_CHARSET));
+
+    final byte[] rest = ":[1,'auth','connect'],ok:[]}\0".getBytes(Utils.UTF_8_CHARSET);
+    System.arraycopy(rest, 0, buffer, length[0], rest.length);
+    length[0] += rest.length;
+
+    assertEquals(Arrays.asList(JSParser.<JSObject>parse("{call:[1,'auth','connect'],ok:[]}")),
+        JSNetworkParser.parse(buffer, length));
+    assertEquals(0, length[0]);
+  }
+
+  @Test
+  void split() throws Exception {
+    final byte[] buffer = ("??" + FIRST + '\0' + SECOND + '\0' + "{inc")
+        .getBytes(Utils.UTF_8_CHARSET);
+    final List<String> frames = new ArrayList<>();
+
+    final int consumed = JSNetworkParser.split(buffer, 2, buffer.length - 2, new FrameListener() {
+      @Override
+      public void onFrame(byte[] buffer, int offset, int length) {
+        frames.add(new String(buffer, offset, length, Utils.UTF_8_CHARSET));
+      }
+    });
+
+    assertEquals(Arrays.asList(FIRST, SECOND), frames);
+    assertEquals(buffer.length - 2 - 4, consumed);
+    assertEquals(4, JSNetworkParser.compact(buffer, 2 + consumed, buffer.length));
+    assertEquals("{inc", new String(buffer, 0, 4, Utils.UTF_8_CHARSET));
+  }
+}
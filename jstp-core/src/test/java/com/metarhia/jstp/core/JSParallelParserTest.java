@@ -0,0 +1,55 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.metarhia.jstp.core.TestUtils.TestData;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class JSParallelParserTest {
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  private final JSParallelParser parser = new JSParallelParser(pool, 16);
+
+  private static String bulkMessage(int count) {
+    final StringBuilder builder = new StringBuilder("{callback:[1],ok:[[");
+    for (int i = 0; i < count; i++) {
+      if (i % 100 == 99) {
+        builder.append(',');
+        continue;
+      }
+      builder.append("{id:").append(i)
+          .append(",name:'item\\u0020").append(i)
+          .append("',tags:[").append(i % 7).append(",'т").append(i % 3)
+          .append("'],nested:[").append(i % 2 == 0 ? "[1,2,3]" : "{}").append("]},");
+    }
+    return builder.append("]]}").toString();
+  }
+
+  @Test
+  public void parse() throws Exception {
+    final String message = bulkMessage(2000);
+    assertEquals((Object) JSParser.parse(message), parser.parse(message));
+    final byte[] bytes = message.getBytes(Utils.UTF_8_CHARSET);
+    assertEquals((Object) JSParser.parse(message), parser.parse(bytes, 0, bytes.length));
+  }
+
+  @Test
+  public void parseSmall() throws Exception {
+    for (TestData<String, ?> td : JSParserTest.parseTestData) {
+      assertEquals(td.expected, parser.parse(td.input), "Failed parallel parsing: " + td.input);
+    }
+  }
+
+  @Test
+  public void parseThrow() throws Exception {
+    final String message = bulkMessage(1000);
+    // invalid escapes are not detected while building the tape
+    final String invalid = message.replace("item\\u0020500", "item\\uzzzz500");
+    final JSParsingException e = assertThrows(JSParsingException.class,
+        () -> parser.parse(invalid));
+    assertEquals("Invalid Unicode escape sequence", e.getErrMessage());
+  }
+}
@@ -1,15 +1,24 @@
 package com.metarhia.jstp.core;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSInterfaces.JSVisitor;
+import com.metarhia.jstp.core.JSTypes.ArrayMap;
 import com.metarhia.jstp.core.JSTypes.JSEntry;
+import com.metarhia.jstp.core.JSTypes.JSNumberArray;
 import com.metarhia.jstp.core.JSTypes.JSUndefined;
 import com.metarhia.jstp.core.TestUtils.TestData;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,16 +66,33 @@ class JSParserTest {
           "birth", -2051225940000L)),
   };
 
+  private static final TestData[] parseNumberTestData = new TestData[]{
+      new TestData<>("[1e3, -2.5E-3, 1.5e+2, -0.0, 0.1, 4.9e-324]",
+          Arrays.asList(1e3, -2.5e-3, 1.5e2, -0.0, 0.1, 4.9e-324)),
+      new TestData<>("[-NaN, +NaN]", Arrays.asList(Double.NaN, Double.NaN)),
+      new TestData<>("[1.7976931348623157e308, 2e308, 1e-400]",
+          Arrays.asList(Double.MAX_VALUE, Double.POSITIVE_INFINITY, 0.0)),
+      new TestData<>("9223372036854775807", Long.MAX_VALUE),
+      new TestData<>("9223372036854775808", 9223372036854775808.0),
+      // halfway between two doubles, must be rounded to even
+      new TestData<>("1.00000000000000011102230246251565404236316680908203125", 1.0),
+      new TestData<>("1.00000000000000011102230246251565404236316680908203126",
+          1.0000000000000002),
+  };
+
   private static final TestData[] parseKeyValuePairTestData = new TestData[]{
       new TestData<>("\\u{0061}bc: 4", new JSEntry<>("abc", 4)),
       new TestData<>("\\u0061bc: 4", new JSEntry<>("abc", 4)),
       new TestData<>("a: 4", new JSEntry<>("a", 4)),
       new TestData<>("_a: 4", new JSEntry<>("_a", 4)),
       new TestData<>("$a: 4", new JSEntry<>("$a", 4)),
-      new TestData<>("55 : ['abc']", new JSEntry<>("55", Arrays.asList("abc")))
+      new TestData<>("55 : ['abc']", new JSEntry<>("55", Arrays.asList("abc"))),
+      new TestData<>("1.50: 4", new JSEntry<>("1.50", 4)),
+      new TestData<>("1e3: 4", new JSEntry<>("1e3", 4)),
+      new TestData<>("0012: 4", new JSEntry<>("0012", 4))
   };
 
-  private static final TestData[] parseThrowTestData = new TestData[]{
+  static final TestData[] parseThrowTestData = new TestData[]{
       new TestData<>("{he : llo : 123}",
           new JSParsingException(6, "llo is not defined")),
       new TestData<>("{he : 'llo'  : 123}",
@@ -81,6 +107,10 @@ class JSParserTest {
           new JSParsingException(3, "Expected value after ':' in object")),
       new TestData<>("{:2}",
           new JSParsingException(1, "Expected valid key")),
+      new TestData<>("[1, 2e]",
+          new JSParsingException(4, "Number parsing failed")),
+      new TestData<>("[-Inf]",
+          new JSParsingException(1, "Invalid format: expected Infinity, +Infinity, -Infinity")),
   };
 
   private JSParser parser;
@@ -102,6 +132,236 @@ class JSParserTest {
     }
   }
 
+  @Test
+  public void parseEscapedBackslash() throws Exception {
+    final String input = "['a\\\\', \"\\\\\\\\\\\"\", 'b\\\\\\'\\\\']";
+    final List<String> expected = Arrays.asList("a\\", "\\\\\"", "b\\'\\");
+    assertEquals(expected, JSParser.parse(input));
+    final byte[] bytes = input.getBytes(Utils.UTF_8_CHARSET);
+    assertEquals(expected, JSParser.parse(bytes, 0, bytes.length));
+  }
+
+  @Test
+  public void parseNumbers() throws Exception {
+    for (TestData<String, Object> td : parseNumberTestData) {
+      final byte[] inputBytes = td.input.getBytes(Utils.UTF_8_CHARSET);
+      assertEquals(td.expected, JSParser.parse(td.input), "Failed parsing: " + td.input);
+      assertEquals(td.expected, JSParser.parse(inputBytes, 0, inputBytes.length),
+          "Failed parsing bytes: " + td.input);
+    }
+  }
+
+  @Test
+  public void containerFactory() throws Exception {
+    final List<String> created = new ArrayList<>();
+    parser.setContainerFactory(new DefaultJSContainerFactory() {
+      @Override
+      public JSObject newObject(int depth, int sizeHint) {
+        created.add("object:" + depth + ":" + sizeHint);
+        return new ArrayMap<>();
+      }
+
+      @Override
+      public List newArray(int depth, int sizeHint) {
+        created.add("array:" + depth + ":" + sizeHint);
+        return super.newArray(depth, sizeHint);
+      }
+    });
+    parser.setInput("[{a: [1, 2, 3]}, {b: [4], c: 5}, {}]");
+
+    final List<JSObject> result = parser.parse();
+
+    assertEquals(JSParser.parse("[{a: [1, 2, 3]}, {b: [4], c: 5}, {}]"), result);
+    assertTrue(result.get(1) instanceof ArrayMap);
+    assertEquals(Arrays.asList("array:0:0", "object:1:0", "array:2:0",
+        "object:1:1", "array:2:3", "object:1:2"), created);
+  }
+
+  @Test
+  public void parseNumberArrays() throws Exception {
+    parser.setNumberArrays(true);
+    for (TestData<String, Object> td : parseTestData) {
+      parser.setInput(td.input);
+      assertEquals(td.expected, parser.parse(), "Failed parsing: " + td.input);
+    }
+
+    parser.setInput("{a: [1, -2, 3e0], b: [[1, 2], [5000000000, 'str'], [1,,2]]}");
+    final JSObject<List> result = parser.parse();
+    final JSNumberArray a = (JSNumberArray) result.get("a");
+    assertEquals(JSNumberArray.TYPE_DOUBLE, a.getType());
+    assertArrayEquals(new double[]{1, -2, 3}, a.toDoubleArray(), 0);
+    assertEquals(JSParser.parse("[[1, 2], [5000000000, 'str'], [1,,2]]"), result.get("b"));
+    assertTrue(result.get("b").get(0) instanceof JSNumberArray);
+
+    // numbers stay boxed as usual in mixed arrays even if they were widened
+    final String mixed = "[[1, 2.5, 'x'], [5000000000, 0.5, 2,, {a: 1}], [1.5, 7, [3]]]";
+    parser.setInput(mixed);
+    final List<List> mixedResult = parser.parse();
+    assertEquals(JSParser.parse(mixed), mixedResult);
+    assertEquals(1, mixedResult.get(0).get(0));
+    assertEquals(5000000000L, mixedResult.get(1).get(0));
+    assertEquals(7, mixedResult.get(2).get(1));
+    assertTrue(mixedResult.get(2).get(2) instanceof JSNumberArray);
+
+    parser.setJsonMode(JSParser.JSON_MODE_ON);
+    parser.setInput("[[1, 2.5, \"x\"], [1.5, 2, null]]");
+    assertEquals((Object) JSParser.parse("[[1, 2.5, 'x'], [1.5, 2, null]]"), parser.parse());
+  }
+
+  @Test
+  public void parseJsonMode() throws Exception {
+    for (int mode : new int[]{JSParser.JSON_MODE_ON, JSParser.JSON_MODE_AUTO}) {
+      parser.setJsonMode(mode);
+      for (TestData<String, Object> td : parseTestData) {
+        parser.setInput(td.input);
+        assertEquals(td.expected, parser.parse(), "Failed parsing: " + td.input);
+      }
+      for (TestData<String, JSParsingException> td : parseThrowTestData) {
+        Exception exception = null;
+        try {
+          parser.setInput(td.input);
+          parser.parse();
+        } catch (JSParsingException e) {
+          exception = e;
+        }
+        assertNotNull(exception);
+        assertEquals(td.expected.getMessage(), exception.getMessage(),
+            "Failed parsing(throw): " + td.input);
+      }
+    }
+
+    final String json = "{\"a\": [1, -2.5e1, true, false, null], \"b\": {\"c\": \"\\u0064\"}, "
+        + "\"e\": [], \"f\": {}}";
+    parser.setInput(json);
+    final Object expected = JSParser.parse(json);
+    assertEquals(expected, parser.parse());
+    // falls back to the full grammar in the middle of the input
+    parser.setInput("{\"a\": [1, 2], \"b\": [null, 'c'], d: undefined}");
+    final JSObject<List> result = parser.parse();
+    assertEquals(JSParser.parse("{a: [1, 2], b: [null, 'c'], d: undefined}"), result);
+  }
+
+  @Test
+  public void parseBytesTest() throws Exception {
+    for (TestData<String, Object> td : parseTestData) {
+      try {
+        // surround input with garbage to make sure only the given range is parsed
+        final byte[] inputBytes = ("]]" + td.input + "\0[").getBytes(Utils.UTF_8_CHARSET);
+        parser.setInput(inputBytes, 2, inputBytes.length - 4);
+        Object actual = parser.parse();
+        assertEquals(td.expected, actual, "Failed parsing: " + td.input);
+      } catch (JSParsingException e) {
+        fail("Cannot parse " + td.input, e);
+      }
+    }
+  }
+
+  @Test
+  public void parseDirectByteBufferTest() throws Exception {
+    final String input = "{ключ: 'значение \\u{1F49A}', \u00e9t\u00e9: [1, 'ünï']}";
+    final byte[] inputBytes = input.getBytes(Utils.UTF_8_CHARSET);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(inputBytes.length);
+    buffer.put(inputBytes).flip();
+
+    parser.setInput(buffer);
+    JSObject<?> actual = parser.parseObject();
+
+    assertEquals(0, buffer.position());
+    assertEquals(JSParser.parse(input), actual);
+    assertEquals("значение 💚", actual.get("ключ"));
+  }
+
+  @Test
+  public void visitTest() throws Exception {
+    for (TestData<String, Object> td : parseTestData) {
+      try {
+        BuildingVisitor visitor = new BuildingVisitor();
+        parser.setInput(td.input);
+        parser.visit(visitor);
+        assertEquals(td.expected, visitor.result, "Failed visiting: " + td.input);
+      } catch (JSParsingException e) {
+        fail("Cannot visit " + td.input, e);
+      }
+    }
+  }
+
+  @Test
+  public void visitAggregate() throws Exception {
+    final double[] sum = new double[1];
+    parser.setInput("{a: 1, b: [2, {c: 3.5}], d: 'skip', e: [[4]]}");
+    parser.visit(new SimpleJSVisitor() {
+      @Override
+      public void onNumber(Number value) {
+        sum[0] += value.doubleValue();
+      }
+    });
+    assertEquals(10.5, sum[0]);
+  }
+
+  @Test
+  public void peekHeader() throws Exception {
+    JSMessageHeader header = JSParser.peekHeader(
+        "{call:[17,'auth'],newAccount:['Payload', {not: [valid}}");
+    assertEquals("call", header.getType());
+    assertEquals(17, header.getNumber());
+    assertEquals("auth", header.getInterfaceName());
+    assertEquals("newAccount", header.getName());
+
+    final byte[] bytes = "{handshake:[0,'app',['v', 1]],'marcus':'7b458e1a'}"
+        .getBytes(Utils.UTF_8_CHARSET);
+    header = JSParser.peekHeader(bytes, 0, bytes.length);
+    assertEquals("handshake", header.getType());
+    assertEquals("app", header.getInterfaceName());
+    assertEquals("marcus", header.getName());
+
+    header = JSParser.peekHeader("{ping:[42]}");
+    assertEquals(42, header.getNumber());
+    assertNull(header.getInterfaceName());
+    assertNull(header.getName());
+
+    assertNull(JSParser.peekHeader("{}"));
+  }
+
+  @Test
+  public void peekHeaderThrow() throws Exception {
+    final String[] inputs = {"[call]", "{call:17}", "{call:['auth']}", "{call:[17 'auth']}"};
+    for (String input : inputs) {
+      try {
+        JSParser.peekHeader(input);
+        fail("Must throw for " + input);
+      } catch (JSParsingException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void visitThrow() throws Exception {
+    for (TestData<String, JSParsingException> td : parseThrowTestData) {
+      Exception exception = null;
+      try {
+        parser.setInput(td.input);
+        parser.visit(new SimpleJSVisitor());
+      } catch (JSParsingException e) {
+        exception = e;
+      }
+      assertNotNull(exception);
+      assertEquals(td.expected.getMessage(), exception.getMessage(),
+          "Failed visiting(throw): " + td.input);
+    }
+  }
+
+  @Test
+  public void parseNumericKeys() throws Exception {
+    final String input = "{1.50: 'a', 1e3: 'b', -7: 'c'}";
+    final byte[] bytes = input.getBytes(Utils.UTF_8_CHARSET);
+    for (JSObject result : new JSObject[]{JSParser.<JSObject>parse(input),
+        JSParser.<JSObject>parse(bytes, 0, bytes.length)}) {
+      // numeric keys keep their source text
+      assertEquals(Arrays.asList("1.50", "1e3", "-7"), new ArrayList<>(result.keySet()));
+    }
+  }
+
   @Test
   public void parseKeyValuePair() throws Exception {
     for (TestData<String, JSEntry> td : parseKeyValuePairTestData) {
@@ -189,4 +449,72 @@ class JSParserTest {
 
     assertEquals(expected, actual);
   }
+
+  private static class BuildingVisitor implements JSVisitor {
+
+    private final Deque<Object> containers = new ArrayDeque<>();
+    private final Deque<String> keys = new ArrayDeque<>();
+    private Object result;
+
+    @Override
+    public void onObjectStart() {
+      containers.push(new LinkedHashMap<String, Object>());
+    }
+
+    @Override
+    public void onKey(String key) {
+      keys.push(key);
+    }
+
+    @Override
+    public void onObjectEnd() {
+      onValue(containers.pop());
+    }
+
+    @Override
+    public void onArrayStart() {
+      containers.push(new ArrayList<>());
+    }
+
+    @Override
+    public void onArrayEnd() {
+      onValue(containers.pop());
+    }
+
+    @Override
+    public void onString(String value) {
+      onValue(value);
+    }
+
+    @Override
+    public void onNumber(Number value) {
+      onValue(value);
+    }
+
+    @Override
+    public void onBoolean(boolean value) {
+      onValue(value);
+    }
+
+    @Override
+    public void onNull() {
+      onValue(null);
+    }
+
+    @Override
+    public void onUndefined() {
+      onValue(JSUndefined.get());
+    }
+
+    private void onValue(Object value) {
+      final Object container = containers.peek();
+      if (container instanceof Map) {
+        ((Map<String, Object>) container).put(keys.pop(), value);
+      } else if (container instanceof List) {
+        ((List<Object>) container).add(value);
+      } else {
+        result = value;
+      }
+    }
+  }
 }
@@ -0,0 +1,61 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.metarhia.jstp.core.JSTypes.JSUndefined;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class JSPathTest {
+
+  private static final String MESSAGE = "{callback: [17], ok: [{items: ["
+      + "{id: 1, tags: ['a', 'b'], name: 'first'},"
+      + "{nested: {id: 'skipped', deep: [[{}]]}, 'id': 2, name: \"sec\\\"ond\"},"
+      + "{name: 'третий', id: 3.5}"
+      + "], total: 3, 'ключ': {a: [1,,3]}}, 'second']}";
+
+  @Test
+  public void evaluate() throws Exception {
+    assertEquals(Arrays.asList(1, 2, 3.5), JSPath.compile("ok[0].items[*].id").evaluate(MESSAGE));
+    assertEquals(Collections.singletonList("sec\"ond"),
+        JSPath.compile("ok[0].items[1].name").evaluate(MESSAGE));
+    assertEquals(Collections.singletonList(Arrays.asList("a", "b")),
+        JSPath.compile("ok[0].items[0].tags").evaluate(MESSAGE));
+    assertEquals(Collections.singletonList("second"), JSPath.compile("ok[1]").evaluate(MESSAGE));
+    assertEquals(Arrays.asList(1, JSUndefined.get(), 3),
+        JSPath.compile("ok[0].ключ.a[*]").evaluate(MESSAGE));
+    assertEquals(Collections.singletonList(17), JSPath.compile("callback[0]").evaluate(MESSAGE));
+  }
+
+  @Test
+  public void evaluateBytes() throws Exception {
+    final byte[] bytes = MESSAGE.getBytes(Utils.UTF_8_CHARSET);
+    assertEquals(Arrays.asList("first", "sec\"ond", "третий"),
+        JSPath.compile("ok[*].items[*].name").evaluate(bytes, 0, bytes.length));
+  }
+
+  @Test
+  public void evaluateNotMatched() throws Exception {
+    assertTrue(JSPath.compile("ok[0].items[3].id").evaluate(MESSAGE).isEmpty());
+    assertTrue(JSPath.compile("callback.id").evaluate(MESSAGE).isEmpty());
+    assertTrue(JSPath.compile("error[0]").evaluate(MESSAGE).isEmpty());
+  }
+
+  @Test
+  public void evaluateThrow() throws Exception {
+    final JSPath path = JSPath.compile("a.b");
+    assertThrows(JSParsingException.class, () -> path.evaluate("{a: {b 1}}"));
+    assertThrows(JSParsingException.class, () -> path.evaluate("{c: d, a: {b: 1}}"));
+    assertThrows(JSParsingException.class, () -> path.evaluate("{a: {b: 1} c: 2}"));
+  }
+
+  @Test
+  public void compileThrow() throws Exception {
+    for (String path : Arrays.asList("", ".a", "a..b", "a[", "a[-1]", "a[x]", "a[0]b")) {
+      assertThrows(IllegalArgumentException.class, () -> JSPath.compile(path), path);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+
+class JSRecordReaderTest {
+
+  private static final List<String> records = Arrays.asList(
+      "{callback:[17],ok:[15703]}",
+      "{event:[18,'auth'],insert:['Marcus Aurelius','AE127095']}",
+      "[1,,300,'quoted \\' string',{d:null,e:undefined}]",
+      "{имя:'Марк Аврелий',emoji:'\\u{1F49A} 💛',n:23051225940000,d:1.5}",
+      "'string record'",
+      "42"
+  );
+
+  private static File createFile() throws Exception {
+    final File file = File.createTempFile("records", ".jstp");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static List<Object> readAll(JSRecordReader reader) throws Exception {
+    final List<Object> result = new ArrayList<>();
+    while (reader.hasNext()) {
+      result.add(reader.next());
+    }
+    return result;
+  }
+
+  private static List<Object> parseAll(List<String> records) throws Exception {
+    final List<Object> result = new ArrayList<>();
+    for (String record : records) {
+      result.add(JSParser.parse(record));
+    }
+    return result;
+  }
+
+  @Test
+  void writeAndRead() throws Exception {
+    for (char separator : new char[]{JSRecordWriter.SEPARATOR_NUL,
+        JSRecordWriter.SEPARATOR_NEWLINE}) {
+      final File file = createFile();
+      final List<Object> expected = parseAll(records);
+      // small buffer makes records span multiple writes
+      try (JSRecordWriter writer = new JSRecordWriter(
+          new FileOutputStream(file).getChannel(), separator, 16)) {
+        for (Object record : expected) {
+          writer.write(record);
+        }
+      }
+
+      // small window makes records span multiple windows
+      try (JSRecordReader reader = new JSRecordReader(
+          new FileInputStream(file).getChannel(), 8)) {
+        assertEquals(expected, readAll(reader));
+        assertFalse(reader.hasNext());
+        assertThrows(NoSuchElementException.class, () -> reader.next());
+      }
+    }
+  }
+
+  @Test
+  void writeAndReadLarge() throws Exception {
+    final File file = createFile();
+    final List<Object> expected = new ArrayList<>();
+    // records bigger than the buffers kept by the tokenizer and serializer
+    // interleaved with small ones that reuse the grown buffers
+    for (int size : new int[]{100 * 1024, 10, 20 * 1024, 3, 70 * 1024}) {
+      final char[] chars = new char[size];
+      Arrays.fill(chars, 'ё');
+      expected.add(JSParser.parse("{s:'" + new String(chars) + "',n:" + size + "}"));
+    }
+    try (JSRecordWriter writer = new JSRecordWriter(file, JSRecordWriter.SEPARATOR_NEWLINE)) {
+      for (Object record : expected) {
+        writer.write(record);
+      }
+    }
+
+    try (JSRecordReader reader = new JSRecordReader(file)) {
+      assertEquals(expected, readAll(reader));
+    }
+  }
+
+  @Test
+  void readMixedSeparators() throws Exception {
+    final File file = createFile();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(("\n" + records.get(0) + "\r\n\0" + records.get(1) + "\0\0"
+          + records.get(2) + "\n" + records.get(3)).getBytes(Utils.UTF_8_CHARSET));
+    }
+
+    try (JSRecordReader reader = new JSRecordReader(file)) {
+      assertEquals(parseAll(records.subList(0, 4)), readAll(reader));
+    }
+  }
+
+  @Test
+  void readInvalidRecord() throws Exception {
+    final File file = createFile();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(("{a:1}\n{a:}\n{a:3}\n").getBytes(Utils.UTF_8_CHARSET));
+    }
+
+    try (JSRecordReader reader = new JSRecordReader(file)) {
+      assertEquals((Object) JSParser.parse("{a:1}"), reader.next());
+      final JSParsingException e = assertThrows(JSParsingException.class, () -> reader.next());
+      assertEquals(6, reader.getRecordOffset());
+      assertEquals(3, e.getErrorOffset());
+      assertTrue(reader.hasNext());
+      assertEquals((Object) JSParser.parse("{a:3}"), reader.next());
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  void readEmpty() throws Exception {
+    try (JSRecordReader reader = new JSRecordReader(createFile())) {
+      assertFalse(reader.hasNext());
+    }
+  }
+}
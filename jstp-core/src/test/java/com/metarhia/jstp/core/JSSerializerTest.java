@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Fail.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.metarhia.jstp.core.JSInterfaces.JSSerializable;
 import com.metarhia.jstp.core.JSTypes.JSUndefined;
 import com.metarhia.jstp.core.TestUtils.TestData;
 import java.util.AbstractMap.SimpleEntry;
@@ -127,4 +128,24 @@ class JSSerializerTest {
       this.value = value;
     }
   }
+
+  @Test
+  public void stringifyReusedBuilder() throws Exception {
+    final JSSerializable nested = new JSSerializable() {
+      @Override
+      public StringBuilder stringify(StringBuilder builder) {
+        // nested call must not clobber the builder of the outer one
+        return builder.append(JSSerializer.stringify(Arrays.asList(1, "a")));
+      }
+    };
+    assertEquals("[0,[1,'a'],2]", JSSerializer.stringify(Arrays.asList(0, nested, 2)));
+
+    final List<Integer> large = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      large.add(i);
+    }
+    final String largeString = JSSerializer.stringify(large);
+    assertEquals(large, JSParser.parse(largeString));
+    assertEquals("{a:[1]}", JSSerializer.stringify(Collections.singletonMap("a", Arrays.asList(1))));
+  }
 }
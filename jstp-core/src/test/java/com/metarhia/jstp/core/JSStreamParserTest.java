@@ -0,0 +1,113 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSStreamParser.StreamListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class JSStreamParserTest {
+
+  private static final List<String> messages = Arrays.asList(
+      "{callback:[17],ok:[15703]}",
+      "{event:[18,'auth'],insert:['Marcus Aurelius','AE127095']}",
+      "{a: 1, b: [1,,300, 'quoted \\' string'], c: {d: null, e: undefined}, f: -Infinity}",
+      "{имя: 'Марк Аврелий', 'emoji': '\\u{1F49A} 💛', n: 23051225940000, d: 1.5}",
+      "{}",
+      "{nested: [[[], {}], [{a: [true, false]}]]} // trailing comment"
+  );
+
+  private final List<JSObject> parsed = new ArrayList<>();
+
+  private final List<JSParsingException> errors = new ArrayList<>();
+
+  private final JSStreamParser parser = new JSStreamParser(new StreamListener() {
+    @Override
+    public void onMessageParsed(JSObject message) {
+      parsed.add(message);
+    }
+
+    @Override
+    public void onParsingError(JSParsingException e) {
+      errors.add(e);
+    }
+  }, 4);
+
+  private static byte[] packetOf(List<String> messages) {
+    StringBuilder builder = new StringBuilder();
+    for (String message : messages) {
+      builder.append(message).append('\0');
+    }
+    return builder.toString().getBytes(Utils.UTF_8_CHARSET);
+  }
+
+  private static List<Object> parseAll(List<String> messages) throws JSParsingException {
+    List<Object> result = new ArrayList<>();
+    for (String message : messages) {
+      result.add(JSParser.parse(message));
+    }
+    return result;
+  }
+
+  @Test
+  void feedWhole() throws Exception {
+    final byte[] packet = packetOf(messages);
+
+    parser.feed(packet, 0, packet.length);
+
+    assertTrue(errors.isEmpty());
+    assertEquals(parseAll(messages), parsed);
+  }
+
+  @Test
+  void feedChunked() throws Exception {
+    final byte[] packet = packetOf(messages);
+    for (int chunkSize = 1; chunkSize < 16; chunkSize++) {
+      parsed.clear();
+      for (int i = 0; i < packet.length; i += chunkSize) {
+        parser.feed(packet, i, Math.min(chunkSize, packet.length - i));
+      }
+      assertTrue(errors.isEmpty(), "Chunk size: " + chunkSize);
+      assertEquals(parseAll(messages), parsed, "Chunk size: " + chunkSize);
+    }
+  }
+
+  @Test
+  void feedLongString() throws Exception {
+    final StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      value.append("text \\' \\\\ \\\" ").append(i);
+    }
+    final List<String> longMessages = Arrays.asList(
+        "{a: '" + value + "', b: \"" + value + "\"}", "{c: 'short'}");
+    final byte[] packet = packetOf(longMessages);
+
+    for (int i = 0; i < packet.length; i += 7) {
+      parser.feed(packet, i, Math.min(7, packet.length - i));
+    }
+
+    assertTrue(errors.isEmpty());
+    assertEquals(parseAll(longMessages), parsed);
+  }
+
+  @Test
+  void feedWithErrors() throws Exception {
+    final byte[] packet = packetOf(Arrays.asList(
+        "{a: 1}", "{he : llo : 123}", "{b: 2}", "[1, 2]", "{c: [1, 2", "{d: 4}"));
+
+    for (int i = 0; i < packet.length; i += 3) {
+      parser.feed(packet, i, Math.min(3, packet.length - i));
+    }
+
+    assertEquals(parseAll(Arrays.asList("{a: 1}", "{b: 2}", "{d: 4}")), parsed);
+    assertEquals(3, errors.size());
+    assertEquals("Index: 6, Message: llo is not defined", errors.get(0).getMessage());
+    assertEquals("Index: 0, Message: Expected '{' at the beginning of JSObject",
+        errors.get(1).getMessage());
+    assertEquals("Index: 9, Message: Unexpected end of message", errors.get(2).getMessage());
+  }
+}
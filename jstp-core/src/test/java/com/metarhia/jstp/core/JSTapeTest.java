@@ -0,0 +1,134 @@
+package com.metarhia.jstp.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.metarhia.jstp.core.JSTypes.JSUndefined;
+import com.metarhia.jstp.core.TestUtils.TestData;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class JSTapeTest {
+
+  private static final String MESSAGE = "{callback: [17], ok: [{items: ["
+      + "{id: 1, tags: ['a', 'b'], name: 'first'},"
+      + "{'id': 2, nested: {deep: [[{}]]}, name: \"sec\\\"ond\"},"
+      + "{id: 3.5, name: 'третий'}"
+      + "], total: 3, last: true, 'ключ\\u0031': null}]}";
+
+  @Test
+  public void getValue() throws Exception {
+    for (TestData<String, ?> td : JSParserTest.parseTestData) {
+      assertEquals(td.expected, (Object) JSTape.build(td.input).getValue(0),
+          "Failed tape parsing: " + td.input);
+    }
+    final byte[] bytes = MESSAGE.getBytes(Utils.UTF_8_CHARSET);
+    assertEquals((Object) JSParser.parse(MESSAGE), JSTape.build(bytes, 0, bytes.length).getValue(0));
+  }
+
+  @Test
+  public void buildThrow() throws Exception {
+    for (TestData<String, JSParsingException> td : JSParserTest.parseThrowTestData) {
+      Exception exception = null;
+      try {
+        JSTape.build(td.input);
+      } catch (JSParsingException e) {
+        exception = e;
+      }
+      assertNotNull(exception, "Expected exception: " + td.input);
+      assertEquals(td.expected.getMessage(), exception.getMessage(),
+          "Failed tape building(throw): " + td.input);
+    }
+  }
+
+  @Test
+  public void cursor() throws Exception {
+    final byte[] bytes = MESSAGE.getBytes(Utils.UTF_8_CHARSET);
+    for (JSTape tape : Arrays.asList(JSTape.build(MESSAGE),
+        JSTape.build(bytes, 0, bytes.length))) {
+      final JSTapeCursor cursor = tape.cursor();
+      cursor.enterObject();
+      assertEquals("callback", cursor.nextKey());
+      assertEquals(Arrays.asList(17), (Object) cursor.getValue());
+      assertTrue(cursor.findKey("ok"));
+      cursor.enterArray();
+      cursor.enterObject();
+      assertTrue(cursor.findKey("items"));
+      assertEquals(3, cursor.getSize());
+      cursor.enterArray();
+      assertTrue(cursor.skipElements(1));
+      cursor.enterObject();
+      assertEquals("id", cursor.nextKey());
+      assertEquals(2, cursor.getNumber());
+      assertTrue(cursor.findKey("name"));
+      assertEquals("sec\"ond", cursor.getString());
+      assertFalse(cursor.hasNext());
+      cursor.exit();
+      cursor.enterObject();
+      assertTrue(cursor.findKey("name"));
+      assertEquals("третий", cursor.getString());
+      cursor.exit();
+      assertFalse(cursor.hasNext());
+      cursor.exit();
+      assertEquals("total", cursor.nextKey());
+      assertEquals(3, cursor.getNumber());
+      assertTrue(cursor.findKey("last"));
+      assertTrue(cursor.getBoolean());
+      assertTrue(cursor.findKey("ключ1"));
+      assertEquals(JSTape.TYPE_NULL, cursor.getType());
+      cursor.skipValue();
+      cursor.exit();
+      cursor.exit();
+      cursor.exit();
+      assertEquals(0, cursor.getDepth());
+      assertEquals(JSTape.TYPE_NONE, cursor.getType());
+    }
+  }
+
+  @Test
+  public void cursorSkip() throws Exception {
+    final JSTape tape = JSTape.build("[[1, [2, 3]], {a: {b: 4}}, , 'five']");
+    final JSTapeCursor cursor = tape.cursor();
+    assertEquals(4, cursor.getSize());
+    cursor.enterArray();
+    cursor.skipValue();
+    assertEquals(JSTape.TYPE_OBJECT, cursor.getType());
+    cursor.skipValue();
+    assertEquals(JSUndefined.get(), (Object) cursor.getValue());
+    assertEquals("five", cursor.getString());
+    assertFalse(cursor.hasNext());
+
+    final JSTapeCursor other = tape.cursor();
+    other.enterArray();
+    assertTrue(other.skipElements(3));
+    assertFalse(other.skipElements(2));
+    other.exit();
+    assertEquals(JSTape.TYPE_NONE, other.getType());
+  }
+
+  @Test
+  public void getValuesClearInput() throws Exception {
+    final JSTape tape = JSTape.build("[12.5, 'str']");
+    final Tokenizer tokenizer = new Tokenizer();
+    assertEquals(12.5, tape.getNumber(1, tokenizer));
+    assertEquals(0, tokenizer.getIndex());
+    assertEquals("str", tape.getString(2, tokenizer));
+    assertEquals(0, tokenizer.getIndex());
+  }
+
+  @Test
+  public void cursorUnexpectedType() throws Exception {
+    final JSTapeCursor cursor = JSTape.build("{a: 'str'}").cursor();
+    assertThrows(IllegalStateException.class, cursor::enterArray);
+    cursor.enterObject();
+    assertThrows(IllegalStateException.class, cursor::getString);
+    cursor.nextKey();
+    assertThrows(IllegalStateException.class, cursor::getNumber);
+    assertEquals("str", cursor.getString());
+    assertThrows(IllegalStateException.class, cursor::skipValue);
+  }
+}
@@ -0,0 +1,74 @@
+package com.metarhia.jstp.core.JSTypes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.metarhia.jstp.core.JSSerializer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class JSNumberArrayTest {
+
+  @Test
+  public void widening() throws Exception {
+    final JSNumberArray array = new JSNumberArray(1);
+
+    array.addLong(1);
+    array.add(2);
+    assertEquals(JSNumberArray.TYPE_INT, array.getType());
+    assertEquals(Arrays.asList(1, 2), array);
+
+    array.addLong(5000000000L);
+    assertEquals(JSNumberArray.TYPE_LONG, array.getType());
+    assertEquals(Arrays.<Number>asList(1, 2, 5000000000L), array);
+
+    array.addDouble(3.5);
+    assertEquals(JSNumberArray.TYPE_DOUBLE, array.getType());
+    assertEquals(Arrays.asList(1.0, 2.0, 5e9, 3.5), array);
+    assertEquals(3, array.getInt(3));
+    assertArrayEquals(new long[]{1, 2, 5000000000L, 3}, array.toLongArray());
+  }
+
+  @Test
+  public void modification() throws Exception {
+    final JSNumberArray array = new JSNumberArray(new int[]{1, 2, 3});
+
+    array.add(0, 0);
+    array.remove(2);
+    array.set(1, 10);
+    assertEquals(Arrays.asList(0, 10, 3), array);
+
+    array.set(2, 0.5);
+    assertArrayEquals(new double[]{0, 10, 0.5}, array.toDoubleArray(), 0);
+    assertThrows(IndexOutOfBoundsException.class, () -> array.getDouble(3));
+  }
+
+  @Test
+  public void freeze() throws Exception {
+    final JSNumberArray array = new JSNumberArray(new double[]{1.5, 2});
+    final List<Object> frozen = JSTypesUtil.freeze(Arrays.<Object>asList(array));
+
+    assertSame(array, frozen.get(0));
+    assertTrue(array.isFrozen());
+    assertEquals(2.0, array.getDouble(1), 0);
+    assertThrows(UnsupportedOperationException.class, () -> array.addDouble(3));
+    assertThrows(UnsupportedOperationException.class, () -> array.set(0, 1));
+    assertThrows(UnsupportedOperationException.class, () -> array.remove(0));
+    assertThrows(UnsupportedOperationException.class, array::clear);
+    assertEquals("[1.5,2.0]", JSSerializer.stringify(array));
+  }
+
+  @Test
+  public void stringify() throws Exception {
+    assertEquals("[]", JSSerializer.stringify(new JSNumberArray()));
+    assertEquals("[1,-2,3]", JSSerializer.stringify(new JSNumberArray(new int[]{1, -2, 3})));
+    assertEquals("[1.5,-2.0]", JSSerializer.stringify(new JSNumberArray(new double[]{1.5, -2})));
+    assertEquals("{a:[5000000000]}", JSSerializer.stringify(
+        Collections.singletonMap("a", new JSNumberArray(new long[]{5000000000L}))));
+  }
+}
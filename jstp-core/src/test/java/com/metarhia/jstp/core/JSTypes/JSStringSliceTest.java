@@ -0,0 +1,100 @@
+package com.metarhia.jstp.core.JSTypes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSParser;
+import com.metarhia.jstp.core.JSSerializer;
+import com.metarhia.jstp.core.Tokens.Token;
+import com.metarhia.jstp.core.Tokens.Tokenizer;
+import com.metarhia.jstp.core.Utils;
+import org.junit.jupiter.api.Test;
+
+class JSStringSliceTest {
+
+  private static final String INPUT =
+      "{type: 'button', label: \"it's\", escaped: 'a\\nb', name: 'кнопка'}";
+
+  @Test
+  void parseChars() throws Exception {
+    final char[] chars = INPUT.toCharArray();
+    final JSParser parser = new JSParser();
+    parser.setStringSlices(true);
+    parser.setInput(chars, 0, chars.length);
+
+    final JSObject<CharSequence> result = parser.parse();
+
+    assertSlices(result);
+    // slices of char[] input are created for any characters
+    assertTrue(result.get("name") instanceof JSStringSlice);
+    assertEquals("кнопка", result.get("name").toString());
+  }
+
+  @Test
+  void parseBytes() throws Exception {
+    final byte[] bytes = INPUT.getBytes(Utils.UTF_8_CHARSET);
+    final JSParser parser = new JSParser();
+    parser.setStringSlices(true);
+    parser.setInput(bytes, 0, bytes.length);
+
+    final JSObject<CharSequence> result = parser.parse();
+
+    assertSlices(result);
+    assertEquals("кнопка", result.get("name"));
+  }
+
+  @Test
+  void parseStringInput() throws Exception {
+    final JSParser parser = new JSParser();
+    parser.setStringSlices(true);
+    parser.setInput(INPUT);
+
+    // String input is copied into the reused buffer, so it is never sliced
+    assertEquals((Object) JSParser.parse(INPUT), parser.parse());
+  }
+
+  @Test
+  void jsonKeys() throws Exception {
+    final byte[] bytes = "{\"type\": \"button\"}".getBytes(Utils.UTF_8_CHARSET);
+    final Tokenizer tokenizer = new Tokenizer(bytes, 0, bytes.length);
+    tokenizer.setStringSlices(true);
+
+    assertEquals(Token.CURLY_OPEN, tokenizer.nextJson());
+    assertEquals(Token.STRING, tokenizer.nextJsonKey());
+    // keys are never sliced even if there are no caches
+    assertTrue(tokenizer.getCharSequence() instanceof String);
+    assertEquals(Token.COLON, tokenizer.nextJson());
+    assertEquals(Token.STRING, tokenizer.nextJson());
+    assertTrue(tokenizer.getCharSequence() instanceof JSStringSlice);
+  }
+
+  @Test
+  void sliceMethods() throws Exception {
+    final JSStringSlice slice = new JSStringSlice("xbuttonx".toCharArray(), 1, 6);
+    final JSStringSlice bytesSlice =
+        new JSStringSlice("[button]".getBytes(Utils.UTF_8_CHARSET), 1, 6);
+
+    assertEquals(slice, bytesSlice);
+    assertEquals("button".hashCode(), slice.hashCode());
+    assertEquals("button".hashCode(), bytesSlice.hashCode());
+    assertTrue(slice.contentEquals("button"));
+    assertFalse(slice.contentEquals("butto"));
+    assertEquals('t', bytesSlice.charAt(2));
+    assertEquals("tt", slice.subSequence(2, 4).toString());
+    assertSame(slice.toString(), slice.toString());
+  }
+
+  private static void assertSlices(JSObject<CharSequence> result) {
+    assertTrue(result.get("type") instanceof JSStringSlice);
+    assertTrue(((JSStringSlice) result.get("type")).contentEquals("button"));
+    assertTrue(result.get("label") instanceof JSStringSlice);
+    assertEquals("a\nb", result.get("escaped"));
+    assertEquals("{type:'button',label:'it\\'s',escaped:'a\\nb',name:'кнопка'}",
+        JSSerializer.stringify(result));
+    // keys are always Strings
+    assertEquals("type", result.getKey(0));
+  }
+}
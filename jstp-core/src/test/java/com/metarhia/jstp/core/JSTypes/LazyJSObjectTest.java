@@ -0,0 +1,100 @@
+package com.metarhia.jstp.core.JSTypes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.metarhia.jstp.core.JSParser;
+import com.metarhia.jstp.core.JSParsingException;
+import com.metarhia.jstp.core.Utils;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class LazyJSObjectTest {
+
+  private static final String INPUT = "{a: 1, 'b': [1,,'str ] \\' }', {c: 2}],"
+      + " c: {d: null, e: ['}', \"]\"]}, // comment\n f: -Infinity, a: 'dup'}";
+
+  @Test
+  public void equalsParsed() throws Exception {
+    assertEquals(JSParser.parse(INPUT), JSParser.parseLazyObject(INPUT));
+
+    final byte[] bytes = ("xx" + INPUT + "xx").getBytes(Utils.UTF_8_CHARSET);
+    assertEquals(JSParser.parse(INPUT), JSParser.parseLazyObject(bytes, 2, bytes.length - 4));
+  }
+
+  @Test
+  public void keysWithoutParsingValues() throws Exception {
+    final LazyJSObject<Object> object = JSParser.parseLazyObject("{a: [1, 2 3], b: 5, a: {}}");
+
+    assertEquals(2, object.size());
+    assertEquals(Arrays.asList("a", "b"), object.keys());
+    assertEquals("b", object.getKey(1));
+    assertTrue(object.containsKey("a"));
+    assertFalse(object.isArray(0));
+    assertEquals(5, ((Number) object.get("b")).intValue());
+  }
+
+  @Test
+  public void parsesOnAccess() throws Exception {
+    final LazyJSObject<Object> object = JSParser.parseLazyObject("{a: 1, b: [1, 2 3]}");
+
+    assertEquals(1, ((Number) object.getByIndex(0)).intValue());
+    assertTrue(object.isArray(1));
+    final RuntimeException e = assertThrows(RuntimeException.class, () -> object.get("b"));
+    assertTrue(e.getCause() instanceof JSParsingException);
+  }
+
+  @Test
+  public void concurrentReads() throws Exception {
+    final Object expected = JSParser.parse(INPUT);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int i = 0; i < 100; i++) {
+        final LazyJSObject<Object> object = JSParser.parseLazyObject(INPUT);
+        final Future<?>[] futures = new Future[4];
+        for (int t = 0; t < futures.length; t++) {
+          // half of the threads parse single values, others parse the whole object
+          final boolean whole = t % 2 == 0;
+          futures[t] = executor.submit(() -> {
+            assertEquals(JSParser.parse("{c: 2}"), ((List) object.get("b")).get(3));
+            if (whole) {
+              assertEquals(expected, object);
+            }
+            assertEquals("dup", object.get("a"));
+            return null;
+          });
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void modification() throws Exception {
+    final LazyJSObject<Object> object = JSParser.parseLazyObject("{a: [1], b: 2}");
+
+    object.put("c", 3);
+    object.remove("a");
+
+    assertEquals(JSParser.parse("{b: 2, c: 3}"), object);
+    assertEquals("c", object.getKey(1));
+  }
+
+  @Test
+  public void indexingErrors() throws Exception {
+    assertThrows(JSParsingException.class, () -> JSParser.parseLazyObject("[1, 2]"));
+    assertThrows(JSParsingException.class, () -> JSParser.parseLazyObject("{a: [1, 2}"));
+    assertThrows(JSParsingException.class, () -> JSParser.parseLazyObject("{a: 'str}"));
+    assertThrows(JSParsingException.class, () -> JSParser.parseLazyObject("{a 1}"));
+  }
+}
@@ -0,0 +1,31 @@
+package com.metarhia.jstp.core.Tokens;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class CharClassesTest {
+
+  @Test
+  public void matchesCharacterMethods() throws Exception {
+    for (int ch = 0; ch < 0x100; ch++) {
+      assertEquals(Character.isWhitespace(ch), CharClasses.isWhitespace(ch));
+      assertEquals(Character.isUnicodeIdentifierStart(ch) || ch == '_' || ch == '$' || ch == '\\',
+          CharClasses.isIdentifierStart(ch));
+      assertEquals(Character.isUnicodeIdentifierPart(ch) || ch == '_' || ch == '$',
+          CharClasses.isIdentifierPart(ch));
+      assertEquals(ch >= '0' && ch <= '9', Tokenizer.isNumber((char) ch));
+    }
+  }
+
+  @Test
+  public void nonAscii() throws Exception {
+    assertTrue(CharClasses.isIdentifierStart('ж'));
+    assertTrue(CharClasses.isIdentifierPart('ї'));
+    assertTrue(CharClasses.isWhitespace('\u2003'));
+    assertFalse(CharClasses.isAscii('ж', CharClasses.LETTER));
+    assertFalse(Tokenizer.isFloatingNumberStart('٣'));
+  }
+}
@@ -0,0 +1,72 @@
+package com.metarhia.jstp.core.Tokens;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSParser;
+import com.metarhia.jstp.core.Utils;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class StringCacheTest {
+
+  @Test
+  public void get() throws Exception {
+    final StringCache cache = new StringCache(4, 6);
+    final char[] chars = "call call,callback".toCharArray();
+    final byte[] bytes = "call".getBytes(Utils.UTF_8_CHARSET);
+
+    final String call = cache.get(chars, 0, 4);
+    assertEquals("call", call);
+    assertSame(call, cache.get(chars, 5, 9));
+    assertSame(call, cache.get(bytes, 0, 4));
+    assertNull(cache.get(chars, 10, 18));
+  }
+
+  @Test
+  public void getNotCached() throws Exception {
+    final StringCache cache = new StringCache();
+    final byte[] bytes = "ключ".getBytes(Utils.UTF_8_CHARSET);
+    final char[] chars = "a\\u0062".toCharArray();
+
+    assertNull(cache.get(bytes, 0, bytes.length));
+    assertNull(cache.get(chars, 0, chars.length));
+  }
+
+  @Test
+  public void parseWithKeyCache() throws Exception {
+    final JSParser parser = new JSParser("[{event: 1}, {event: 2, 'ev\\u0065nt': 3, ключ: 4}]");
+    parser.setKeyCache(new StringCache());
+
+    final List<JSObject> result = parser.parse();
+
+    assertEquals(JSParser.parse("[{event: 1}, {event: 3, ключ: 4}]"), result);
+    assertSame(result.get(0).getKey(0), result.get(1).getKey(0));
+    assertNotSame(result.get(0).getKey(0),
+        ((JSObject) JSParser.parse("{event: 1}")).getKey(0));
+  }
+
+  @Test
+  public void parseWithValueCache() throws Exception {
+    final String input = "[{type: 'button'}, {type: \"button\", name: 'b\\u0075tton', "
+        + "label: 'кнопка'}]";
+    final JSParser parser = new JSParser(input);
+    parser.setValueCache(new StringCache());
+
+    final List<JSObject> result = parser.parse();
+
+    assertEquals(JSParser.parse(input), result);
+    assertSame(result.get(0).get("type"), result.get(1).get("type"));
+    assertNotSame(result.get(0).get("type"), result.get(1).get("name"));
+
+    final byte[] bytes = input.getBytes(Utils.UTF_8_CHARSET);
+    parser.setInput(bytes, 0, bytes.length);
+    final List<JSObject> bytesResult = parser.parse();
+
+    assertEquals(result, bytesResult);
+    assertSame(result.get(0).get("type"), bytesResult.get(0).get("type"));
+  }
+}
@@ -3,6 +3,7 @@ package com.metarhia.jstp.core;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.metarhia.jstp.core.TestUtils.TestData;
+import java.nio.ByteBuffer;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -28,7 +29,12 @@ public class UtilsTest {
       new TestData<>("{}", "{}"),
       new TestData<>("имя, оно самоеё~:)", "имя, оно самоеё~:)"),
       new TestData<>("fff\u0000\u1111g\u0020gg\u007f",
-          "fff\\u0000\u1111g\u0020gg\\u007F")
+          "fff\\u0000\u1111g\u0020gg\\u007F"),
+      new TestData<>("", ""),
+      new TestData<>("'", "\\'"),
+      new TestData<>("\n\\\t", "\\n\\\\\\t"),
+      new TestData<>("'long ASCII text field!\"#$%&()'",
+          "\\'long ASCII text field!\"#$%&()\\'")
   };
 
   private static final TestUtils.TestData[] doubleTestData = new TestUtils.TestData[]{
@@ -55,6 +61,17 @@ public class UtilsTest {
     }
   }
 
+  @Test
+  public void escapeStringAppends() throws Exception {
+    final StringBuilder builder = new StringBuilder("prefix:");
+    Utils.escapeString(new StringBuilder("a\nb"), builder);
+    Utils.escapeString("clean", builder);
+    assertEquals("prefix:a\\nbclean", builder.toString());
+    // String overload must stay for the callers compiled against it
+    assertEquals(StringBuilder.class, Utils.class
+        .getMethod("escapeString", String.class, StringBuilder.class).getReturnType());
+  }
+
   @Test
   public void unescapeString() throws Exception {
     for (TestData<String, String> td : unescapeTestData) {
@@ -63,6 +80,22 @@ public class UtilsTest {
     }
   }
 
+  @Test
+  public void unescapeStringBytes() throws Exception {
+    for (TestData<String, String> td : unescapeTestData) {
+      final byte[] input = td.input.getBytes(Utils.UTF_8_CHARSET);
+      String actual = Utils.unescapeString(input, 0, input.length, new StringBuilder());
+      assertEquals(td.expected, actual);
+    }
+  }
+
+  @Test
+  public void appendUtf8Malformed() throws Exception {
+    final byte[] input = {'a', (byte) 0xd0, 'b', (byte) 0xe2, (byte) 0x82};
+    String actual = Utils.appendUtf8(input, 0, input.length, new StringBuilder()).toString();
+    assertEquals("a\ufffdb\ufffd\ufffd", actual);
+  }
+
   @Test
   public void charArrayToDouble() throws Exception {
     for (TestUtils.TestData<String, Double> td : doubleTestData) {
@@ -71,4 +104,24 @@ public class UtilsTest {
       assertEquals(td.expected, actual, 0.000000000000000000000001);
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void indexOfAny() throws Exception {
+    final byte[] input = "абвгдежзийклмнопрстуф\\'".getBytes(Utils.UTF_8_CHARSET);
+    for (int from = 0; from < input.length; from++) {
+      final int expected = from <= input.length - 2 ? input.length - 2 : input.length - 1;
+      assertEquals(expected,
+          Utils.indexOfAny(input, (byte) '\'', (byte) '\\', from, input.length));
+    }
+    for (int max = 0; max < input.length - 2; max++) {
+      assertEquals(-1, Utils.indexOfAny(input, (byte) '\'', (byte) '\\', 0, max));
+    }
+    assertEquals(5, Utils.indexOfAny(input, (byte) 0xb2, (byte) '\'', 0, input.length));
+    // indices of the reused view are absolute
+    final ByteBuffer words = Utils.wordView(input);
+    words.position(input.length);
+    assertEquals(input.length - 2,
+        Utils.indexOfAny(words, (byte) '\'', (byte) '\\', 1, input.length));
+    assertEquals(3, Utils.indexOfAny("abc def\"".toCharArray(), ' ', '"', 1, 8));
+  }
+}
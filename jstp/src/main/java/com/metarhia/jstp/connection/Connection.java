@@ -1,16 +1,21 @@
 package com.metarhia.jstp.connection;
 
+import com.metarhia.jstp.Constants;
 import com.metarhia.jstp.core.Handlers.ManualHandler;
+import com.metarhia.jstp.core.JSByteSerializer;
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
 import com.metarhia.jstp.core.JSTypes.JSElements;
+import com.metarhia.jstp.core.JSTypes.LazyJSObject;
 import com.metarhia.jstp.exceptions.AlreadyConnectedException;
 import com.metarhia.jstp.exceptions.MessageHandlingException;
+import com.metarhia.jstp.messagehandling.ByteMessageHandler;
 import com.metarhia.jstp.messagehandling.MessageHandler;
 import com.metarhia.jstp.messagehandling.MessageHandlerImpl;
 import com.metarhia.jstp.session.SessionData;
 import com.metarhia.jstp.session.SessionPolicy;
 import com.metarhia.jstp.session.SimpleSessionPolicy;
 import com.metarhia.jstp.storage.StorageInterface;
+import com.metarhia.jstp.transport.ByteTransport;
 import com.metarhia.jstp.transport.Transport;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,7 +33,7 @@ import org.slf4j.LoggerFactory;
  * Connection that uses JSTP over specified transport to transmit data
  */
 public class Connection implements
-    Transport.TransportListener,
+    Transport.ByteTransportListener,
     MessageHandler.MessageHandlerListener {
 
   private static final Logger logger = LoggerFactory.getLogger(Connection.class);
@@ -75,6 +80,11 @@ public class Connection implements
 
   private AtomicLong messageNumberCounter;
 
+  /**
+   * Serializer used to encode messages for {@link ByteTransport}s, guarded by itself
+   */
+  private final JSByteSerializer byteSerializer = new JSByteSerializer();
+
   /**
    * Creates connection instance over specified transport {@param transport}.
    * and with {@link SimpleSessionPolicy} as default {@link SessionPolicy},
@@ -485,11 +495,31 @@ public class Connection implements
    */
   public void sendBuffered(Message message) {
     sessionPolicy.onMessageSent(message);
-    send(message.stringify());
+    send(message);
   }
 
+  /**
+   * Sends message directly to the transport if it's connected, messages are
+   * encoded right into the bytes if the transport is {@link ByteTransport}
+   *
+   * @param message message to be passed to the transport
+   */
   public void send(Message message) {
-    send(message.stringify());
+    final Transport transport = this.transport;
+    if (!transport.isConnected()) {
+      return;
+    }
+    if (transport instanceof ByteTransport) {
+      final byte[] bytes;
+      synchronized (byteSerializer) {
+        final int length = byteSerializer.serialize(message.get());
+        // the array is owned by the transport after the call
+        bytes = Arrays.copyOf(byteSerializer.getBuffer(), length);
+      }
+      ((ByteTransport) transport).send(bytes, 0, bytes.length);
+    } else {
+      transport.send(message.stringify());
+    }
   }
 
   /**
@@ -718,6 +748,16 @@ public class Connection implements
     messageHandler.post(message);
   }
 
+  @Override
+  public void onMessageReceived(byte[] message, int offset, int length) {
+    final MessageHandler handler = messageHandler;
+    if (handler instanceof ByteMessageHandler) {
+      ((ByteMessageHandler) handler).post(message, offset, length);
+    } else {
+      handler.post(new String(message, offset, length, Constants.UTF_8_CHARSET));
+    }
+  }
+
   @Override
   public void onTransportClosed() {
     synchronized (stateLock) {
@@ -898,6 +938,9 @@ public class Connection implements
   }
 
   private static boolean isSecondNotArray(JSObject message) {
+    if (message instanceof LazyJSObject) {
+      return !((LazyJSObject) message).isArray(1);
+    }
     return !(message.getByIndex(1) instanceof List);
   }
 
@@ -0,0 +1,18 @@
+package com.metarhia.jstp.messagehandling;
+
+/**
+ * {@link MessageHandler} that also accepts raw UTF-8 encoded messages, so that
+ * they don't have to be decoded into Strings before parsing
+ */
+public interface ByteMessageHandler extends MessageHandler {
+
+  /**
+   * Adds UTF-8 encoded message to the queue, {@param message} array must not be
+   * modified after this call
+   *
+   * @param message array containing message to be handled
+   * @param offset  index of the first byte of the message
+   * @param length  number of bytes in the message
+   */
+  void post(byte[] message, int offset, int length);
+}
@@ -1,10 +1,16 @@
 package com.metarhia.jstp.messagehandling;
 
+import com.metarhia.jstp.Constants;
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSMessageHeader;
 import com.metarhia.jstp.core.JSParser;
 import com.metarhia.jstp.core.JSParsingException;
+import com.metarhia.jstp.core.JSTypes.LazyJSObject;
+import com.metarhia.jstp.core.Tokens.StringCache;
 import com.metarhia.jstp.exceptions.MessageHandlingException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -15,16 +21,74 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Default {@link MessageHandler} implementation that allows to specify
- * Executor to be used.
+ * Executor to be used, also handles raw UTF-8 encoded messages
+ * (see {@link ByteMessageHandler}).
+ * <p>
+ * Every message is handled by its own task with the parser reused by the
+ * executor thread, unless draining is enabled (see {@link #setDraining(boolean)}).
  */
-public class MessageHandlerImpl implements MessageHandler {
+public class MessageHandlerImpl implements ByteMessageHandler {
 
   private static final Logger logger = LoggerFactory.getLogger(MessageHandlerImpl.class);
 
+  private static final int INITIAL_QUEUE_CAPACITY = 16;
+
   private ClearableExecutor executor;
 
   private MessageHandlerListener listener;
 
+  /**
+   * Cache shared by all of the parsers to reuse instances of the repeated keys
+   */
+  private final StringCache keyCache = new StringCache();
+
+  /**
+   * Parsers reused by the executor threads
+   */
+  private final ThreadLocal<JSParser> parsers = new ThreadLocal<JSParser>() {
+    @Override
+    protected JSParser initialValue() {
+      final JSParser parser = new JSParser();
+      parser.setKeyCache(keyCache);
+      return parser;
+    }
+  };
+
+  private volatile boolean lazyParsing;
+
+  private volatile HeaderFilter headerFilter;
+
+  private volatile ParseCache parseCache;
+
+  private volatile StringCache valueCache;
+
+  private volatile int jsonMode = JSParser.JSON_MODE_OFF;
+
+  private boolean draining;
+
+  /**
+   * Pending messages (Strings or UTF-8 encoded byte arrays) stored as a ring
+   * buffer, only used if draining is enabled
+   */
+  private Object[] messages = new Object[INITIAL_QUEUE_CAPACITY];
+
+  private int[] offsets = new int[INITIAL_QUEUE_CAPACITY];
+
+  private int[] lengths = new int[INITIAL_QUEUE_CAPACITY];
+
+  private int head;
+
+  private int count;
+
+  /**
+   * Task that handles pending messages one by one if draining is enabled, it is
+   * replaced upon {@link #clearQueue()} so that the cancelled task can't
+   * interfere with the new one
+   */
+  private DrainRunnable drainRunnable = new DrainRunnable();
+
+  private boolean scheduled;
+
   public MessageHandlerImpl() {
     this(null);
   }
@@ -44,44 +108,360 @@ public class MessageHandlerImpl implements MessageHandler {
 
   @Override
   public synchronized void post(String message) {
-    executor.execute(new ParserRunnable(message));
+    if (draining) {
+      enqueue(message, 0, message.length());
+    } else {
+      executor.execute(new ParserRunnable(message, null, 0, 0));
+    }
+  }
+
+  @Override
+  public synchronized void post(byte[] message, int offset, int length) {
+    if (draining) {
+      enqueue(message, offset, length);
+    } else {
+      executor.execute(new ParserRunnable(null, message, offset, length));
+    }
   }
 
   @Override
   public synchronized void clearQueue() {
+    Arrays.fill(messages, null);
+    head = count = 0;
+    if (scheduled) {
+      drainRunnable = new DrainRunnable();
+      scheduled = false;
+    }
     executor.clearQueue();
   }
 
+  private void enqueue(Object message, int offset, int length) {
+    if (count == messages.length) {
+      growQueue();
+    }
+    final int tail = (head + count) & (messages.length - 1);
+    messages[tail] = message;
+    offsets[tail] = offset;
+    lengths[tail] = length;
+    count++;
+    if (!scheduled) {
+      scheduled = true;
+      executor.execute(drainRunnable);
+    }
+  }
+
+  private void growQueue() {
+    final int capacity = messages.length * 2;
+    final Object[] newMessages = new Object[capacity];
+    final int[] newOffsets = new int[capacity];
+    final int[] newLengths = new int[capacity];
+    for (int i = 0; i < count; i++) {
+      final int index = (head + i) & (messages.length - 1);
+      newMessages[i] = messages[index];
+      newOffsets[i] = offsets[index];
+      newLengths[i] = lengths[index];
+    }
+    messages = newMessages;
+    offsets = newOffsets;
+    lengths = newLengths;
+    head = 0;
+  }
+
   @Override
   public void setListener(MessageHandlerListener listener) {
     this.listener = listener;
   }
 
+  public synchronized boolean isDraining() {
+    return draining;
+  }
+
+  /**
+   * If enabled, posted messages are queued and handled one by one by a single
+   * task that drains the queue, so no task is created per message. Messages
+   * are never handled in parallel then (even if the executor has multiple
+   * threads) and a slow listener delays all of the following messages.
+   * Should be set before any messages are posted.
+   *
+   * @param draining true to enable draining, disabled by default
+   */
+  public synchronized void setDraining(boolean draining) {
+    this.draining = draining;
+  }
+  public boolean isLazyParsing() {
+    return lazyParsing;
+  }
+
+  /**
+   * If enabled, messages are parsed as {@link LazyJSObject} so that message
+   * payload is only parsed when it is accessed by the handlers
+   *
+   * @param lazyParsing true to enable lazy parsing, disabled by default
+   */
+  public void setLazyParsing(boolean lazyParsing) {
+    this.lazyParsing = lazyParsing;
+  }
+
+  public HeaderFilter getHeaderFilter() {
+    return headerFilter;
+  }
+
+  /**
+   * Sets filter that is called with the message header before the message is
+   * parsed, messages rejected by the filter are dropped without parsing
+   *
+   * @param headerFilter message filter or null to handle all of the messages
+   */
+  public void setHeaderFilter(HeaderFilter headerFilter) {
+    this.headerFilter = headerFilter;
+  }
+
+  public ParseCache getParseCache() {
+    return parseCache;
+  }
+
+  /**
+   * Sets cache of the parsed messages, so that repeated identical messages are
+   * not parsed again. Messages handled with the cache enabled are unmodifiable
+   * (even the ones that were parsed for the first time). Cache is not used
+   * if lazy parsing is enabled.
+   *
+   * @param parseCache cache to use or null to disable caching (default)
+   */
+  public void setParseCache(ParseCache parseCache) {
+    this.parseCache = parseCache;
+  }
+
+  public StringCache getValueCache() {
+    return valueCache;
+  }
+
+  /**
+   * Sets cache used to deduplicate short string values of the messages handled
+   * by this handler (and so by its connection), so that repeated values held
+   * by the long-lived objects share the same String instances. Cache is not
+   * used if lazy parsing is enabled.
+   *
+   * @param valueCache cache to use or null to disable deduplication (default)
+   */
+  public void setValueCache(StringCache valueCache) {
+    this.valueCache = valueCache;
+  }
+
+  public int getJsonMode() {
+    return jsonMode;
+  }
+
+  /**
+   * Sets strict JSON mode of the parser for the messages handled by this handler
+   * (and so by its connection), it pays off if the peer sends plain JSON. JSTP
+   * messages are still parsed correctly in any mode. Mode is not used if lazy
+   * parsing is enabled.
+   *
+   * @param jsonMode one of the JSParser JSON modes, see {@link JSParser#setJsonMode(int)}
+   */
+  public void setJsonMode(int jsonMode) {
+    this.jsonMode = jsonMode;
+  }
+
+  /**
+   * Handles a single message with the parser of the current thread
+   */
   private class ParserRunnable implements Runnable {
 
-    private String message;
+    String message;
+
+    byte[] bytes;
 
-    public ParserRunnable(String message) {
+    int offset;
+
+    int length;
+
+    ParserRunnable(String message, byte[] bytes, int offset, int length) {
       this.message = message;
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
     }
 
     @Override
     public void run() {
+      final JSParser parser = parsers.get();
+      try {
+        handleMessage(parser);
+      } finally {
+        parser.clearInput();
+      }
+    }
+
+    void handleMessage(JSParser parser) {
+      final HeaderFilter filter = headerFilter;
+      if (filter != null && !isAccepted(parser, filter)) {
+        return;
+      }
       try {
-        final Object parseResult = new JSParser(message).parse();
+        if (lazyParsing) {
+          listener.onMessageParsed(bytes != null
+              ? JSParser.parseLazyObject(bytes, offset, length)
+              : JSParser.parseLazyObject(message));
+          return;
+        }
+        final ParseCache cache = parseCache;
+        if (cache != null) {
+          final JSObject cached = bytes != null
+              ? cache.get(bytes, offset, length)
+              : cache.get(message);
+          if (cached != null) {
+            listener.onMessageParsed(cached);
+            return;
+          }
+        }
+        setParserInput(parser);
+        parser.setValueCache(valueCache);
+        parser.setJsonMode(jsonMode);
+        final Object parseResult = parser.parse();
         if (parseResult instanceof JSObject) {
-          listener.onMessageParsed((JSObject) parseResult);
+          JSObject result = (JSObject) parseResult;
+          if (cache != null) {
+            result = bytes != null
+                ? cache.put(bytes, offset, length, result)
+                : cache.put(message, result);
+          }
+          listener.onMessageParsed(result);
         } else {
           listener.onHandlingError(new MessageHandlingException(
-              "Unexpected message (expected JSObject): " + message));
+              "Unexpected message (expected JSObject): " + getMessage()));
         }
       } catch (JSParsingException e) {
         listener.onHandlingError(new MessageHandlingException(
-            "Cannot parse message: " + message, e));
+            "Cannot parse message: " + getMessage(), e));
+      }
+    }
+
+    private boolean isAccepted(JSParser parser, HeaderFilter filter) {
+      final JSMessageHeader header;
+      try {
+        setParserInput(parser);
+        header = parser.peekHeader();
+      } catch (JSParsingException e) {
+        // let the full parse handle invalid messages
+        return true;
+      }
+      return header == null || filter.accept(header);
+    }
+
+    private void setParserInput(JSParser parser) {
+      if (bytes != null) {
+        parser.setInput(bytes, offset, length);
+      } else {
+        parser.setInput(message);
+      }
+    }
+
+    private String getMessage() {
+      if (message == null) {
+        message = new String(bytes, offset, length, Constants.UTF_8_CHARSET);
+      }
+      return message;
+    }
+  }
+
+  /**
+   * Handles pending messages until the queue is empty reusing the same parser
+   * and itself as the current message, only one such task is executed at a time
+   * (see {@link #setDraining(boolean)})
+   */
+  private class DrainRunnable extends ParserRunnable {
+
+    private final JSParser parser = new JSParser();
+
+    DrainRunnable() {
+      super(null, null, 0, 0);
+      parser.setKeyCache(keyCache);
+    }
+
+    @Override
+    public void run() {
+      boolean drained = false;
+      try {
+        while (poll()) {
+          try {
+            handleMessage(parser);
+          } catch (RuntimeException e) {
+            logger.error("Failed to handle message", e);
+          }
+        }
+        drained = true;
+      } finally {
+        if (!drained) {
+          reschedule();
+        }
+      }
+    }
+
+    /**
+     * Replaces this task with the new one if it was terminated by an Error, so
+     * that the rest of the messages are still handled (the parser of this task
+     * may be left in an inconsistent state and is not reused)
+     */
+    private void reschedule() {
+      synchronized (MessageHandlerImpl.this) {
+        if (drainRunnable != this) {
+          return;
+        }
+        drainRunnable = new DrainRunnable();
+        scheduled = count > 0;
+        if (scheduled) {
+          executor.execute(drainRunnable);
+        }
+      }
+    }
+
+    /**
+     * Takes next message from the queue
+     *
+     * @return false if there are no more messages for this task
+     */
+    private boolean poll() {
+      synchronized (MessageHandlerImpl.this) {
+        message = null;
+        bytes = null;
+        if (drainRunnable != this || count == 0) {
+          if (drainRunnable == this) {
+            scheduled = false;
+          }
+          parser.clearInput();
+          return false;
+        }
+        final Object next = messages[head];
+        if (next instanceof String) {
+          message = (String) next;
+        } else {
+          bytes = (byte[]) next;
+        }
+        offset = offsets[head];
+        length = lengths[head];
+        messages[head] = null;
+        head = (head + 1) & (messages.length - 1);
+        count--;
+        return true;
       }
     }
   }
 
+  /**
+   * Filter that decides whether the message should be handled judging only by its header
+   */
+  public interface HeaderFilter {
+
+    /**
+     * @param header header of the message
+     *
+     * @return true if message should be parsed and handled and false to drop it
+     */
+    boolean accept(JSMessageHeader header);
+  }
+
   /**
    * Executor that allows removal of all of it's tasks
    */
@@ -109,6 +489,12 @@ public class MessageHandlerImpl implements MessageHandler {
 
     @Override
     public synchronized void execute(Runnable runnable) {
+      final Iterator<Future> iterator = submittedTasks.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().isDone()) {
+          iterator.remove();
+        }
+      }
       submittedTasks.add(executorService.submit(runnable));
     }
 
@@ -0,0 +1,166 @@
+package com.metarhia.jstp.messagehandling;
+
+import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSTypes.JSTypesUtil;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parsed messages keyed by their raw frames, so that repeated
+ * identical messages (e.g. status snapshots) are not parsed again. Cached messages
+ * are frozen (see {@link JSTypesUtil#freeze(Object)}) as the same instance is
+ * returned for every matching frame. Least recently used messages are evicted first.
+ * <p>
+ * Frames are looked up by hash and length and then compared with the copy
+ * stored in the cache, so hash collisions never return wrong messages.
+ */
+public class ParseCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 64;
+
+  public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024;
+
+  private final int maxFrameLength;
+
+  private final Map<Long, CachedMessage> entries;
+
+  private long hitCount;
+
+  private long missCount;
+
+  public ParseCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * @param maxEntries     max number of cached messages
+   * @param maxFrameLength max length of the frame that can be cached (in chars
+   *                       or bytes), longer frames are always parsed
+   */
+  public ParseCache(final int maxEntries, int maxFrameLength) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+    }
+    this.maxFrameLength = maxFrameLength;
+    this.entries = new LinkedHashMap<Long, CachedMessage>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, CachedMessage> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @return cached message for the {@param frame} or null if there is none
+   */
+  public synchronized JSObject get(String frame) {
+    final CachedMessage cached = frame.length() <= maxFrameLength
+        ? entries.get(key(frame.hashCode(), frame.length())) : null;
+    if (cached != null && frame.equals(cached.frame)) {
+      hitCount++;
+      return cached.message;
+    }
+    missCount++;
+    return null;
+  }
+
+  /**
+   * @see #get(String)
+   */
+  public synchronized JSObject get(byte[] frame, int offset, int length) {
+    final CachedMessage cached = length <= maxFrameLength
+        ? entries.get(key(hash(frame, offset, length), length)) : null;
+    if (cached != null && cached.frame instanceof byte[]
+        && equals((byte[]) cached.frame, frame, offset, length)) {
+      hitCount++;
+      return cached.message;
+    }
+    missCount++;
+    return null;
+  }
+
+  /**
+   * Freezes {@param message} parsed from the {@param frame} and caches it
+   *
+   * @return frozen message
+   */
+  public JSObject put(String frame, JSObject message) {
+    final JSObject frozen = JSTypesUtil.freeze(message);
+    if (frame.length() <= maxFrameLength) {
+      synchronized (this) {
+        entries.put(key(frame.hashCode(), frame.length()), new CachedMessage(frame, frozen));
+      }
+    }
+    return frozen;
+  }
+
+  /**
+   * @see #put(String, JSObject)
+   */
+  public JSObject put(byte[] frame, int offset, int length, JSObject message) {
+    final JSObject frozen = JSTypesUtil.freeze(message);
+    if (length <= maxFrameLength) {
+      final byte[] copy = Arrays.copyOfRange(frame, offset, offset + length);
+      synchronized (this) {
+        entries.put(key(hash(copy, 0, length), length), new CachedMessage(copy, frozen));
+      }
+    }
+    return frozen;
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Removes all of the cached messages, counters are not reset
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private static Long key(int hash, int length) {
+    return ((long) hash << 32) | (length & 0xffffffffL);
+  }
+
+  private static int hash(byte[] frame, int offset, int length) {
+    int hash = 0;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      hash = 31 * hash + frame[i];
+    }
+    return hash;
+  }
+
+  private static boolean equals(byte[] cached, byte[] frame, int offset, int length) {
+    if (cached.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (cached[i] != frame[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static class CachedMessage {
+
+    final Object frame;
+
+    final JSObject message;
+
+    CachedMessage(Object frame, JSObject message) {
+      this.frame = frame;
+      this.message = message;
+    }
+  }
+}
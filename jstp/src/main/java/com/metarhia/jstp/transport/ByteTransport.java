@@ -0,0 +1,18 @@
+package com.metarhia.jstp.transport;
+
+/**
+ * {@link Transport} that can also send already encoded messages without
+ * converting them to Strings
+ */
+public interface ByteTransport extends Transport {
+
+  /**
+   * Sends UTF-8 encoded message and adds message separator after it, the
+   * ownership of the {@param message} array is passed to the transport
+   *
+   * @param message array containing encoded message to be sent
+   * @param offset  index of the first byte of the message
+   * @param length  number of bytes in the message
+   */
+  void send(byte[] message, int offset, int length);
+}
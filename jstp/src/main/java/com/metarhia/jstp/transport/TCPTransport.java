@@ -1,15 +1,21 @@
 package com.metarhia.jstp.transport;
 
 import com.metarhia.jstp.Constants;
+import com.metarhia.jstp.core.JSByteSerializer;
+import com.metarhia.jstp.core.JSNetworkParser;
+import com.metarhia.jstp.core.JSNetworkParser.FrameListener;
 import com.metarhia.jstp.exceptions.AlreadyConnectedException;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.net.ssl.HostnameVerifier;
@@ -24,7 +30,7 @@ import org.slf4j.LoggerFactory;
 /**
  * TCP transport for JSTP connection
  */
-public class TCPTransport implements Transport {
+public class TCPTransport implements ByteTransport {
 
   /**
    * Default closing tick
@@ -41,6 +47,17 @@ public class TCPTransport implements Transport {
    */
   public static final int DEFAULT_MESSAGE_SIZE = 100;
 
+  /**
+   * Default size of the receive buffer (it grows if a message doesn't fit)
+   */
+  public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 8192;
+
+  /**
+   * Receive buffer is handed over to the listener only if complete messages
+   * take at least 1/MIN_HANDED_OVER_FILL of it, otherwise they are copied out
+   */
+  private static final int MIN_HANDED_OVER_FILL = 4;
+
   private static final Logger logger = LoggerFactory.getLogger(TCPTransport.class);
 
   private final Object senderLock = new Object();
@@ -54,7 +71,10 @@ public class TCPTransport implements Transport {
   private boolean closing;
   private Thread receiverThread;
   private Thread senderThread;
-  private Queue<String> messageQueue;
+  /**
+   * Pending messages: Strings or ByteBuffers wrapping encoded messages
+   */
+  private Queue<Object> messageQueue;
   private Socket socket;
 
   private OutputStream out;
@@ -203,7 +223,8 @@ public class TCPTransport implements Transport {
       @Override
       public void run() {
         try {
-          String message;
+          final JSByteSerializer encoder = new JSByteSerializer();
+          Object message;
           while (!closing) {
             while (running) {
               while (messageQueue.isEmpty()) {
@@ -215,7 +236,7 @@ public class TCPTransport implements Transport {
               }
               message = messageQueue.poll();
               if (message != null) {
-                sendMessageInternal(message);
+                sendMessageInternal(message, encoder);
               }
             }
             synchronized (pauseLock) {
@@ -235,11 +256,22 @@ public class TCPTransport implements Transport {
     this.senderThread.start();
   }
 
-  private void sendMessageInternal(String message) throws IOException {
-    logger.trace("Sending message: {}", message);
-
-    out.write(message.getBytes(Constants.UTF_8_CHARSET));
-    out.write(Constants.SEPARATOR);
+  private void sendMessageInternal(Object message, JSByteSerializer encoder)
+      throws IOException {
+    if (message instanceof String) {
+      logger.trace("Sending message: {}", message);
+      // encode into the reusable buffer of the sender instead of allocating bytes
+      final int length = encoder.encode((String) message, (byte) Constants.SEPARATOR);
+      out.write(encoder.getBuffer(), 0, length);
+    } else {
+      final ByteBuffer bytes = (ByteBuffer) message;
+      if (logger.isTraceEnabled()) {
+        logger.trace("Sending message: {}", new String(bytes.array(), bytes.position(),
+            bytes.remaining(), Constants.UTF_8_CHARSET));
+      }
+      out.write(bytes.array(), bytes.position(), bytes.remaining());
+      out.write(Constants.SEPARATOR);
+    }
     out.flush();
   }
 
@@ -248,8 +280,7 @@ public class TCPTransport implements Transport {
       throw new RuntimeException("Starting new receiver thread before closing the previous one");
     }
 
-    final ByteArrayOutputStream localMessageBuilder =
-        new ByteArrayOutputStream(DEFAULT_MESSAGE_SIZE);
+    final ReceiveBuffer localReceiveBuffer = new ReceiveBuffer();
     final BufferedInputStream localIn = in;
     this.receiverThread = new Thread(new Runnable() {
       @Override
@@ -257,7 +288,7 @@ public class TCPTransport implements Transport {
         try {
           while (!closing) {
             while (running) {
-              processMessage(localIn, localMessageBuilder);
+              processMessage(localIn, localReceiveBuffer);
             }
             synchronized (pauseLock) {
               if (!running) {
@@ -276,24 +307,55 @@ public class TCPTransport implements Transport {
     this.receiverThread.start();
   }
 
-  void processMessage(BufferedInputStream in, ByteArrayOutputStream messageBuilder)
-      throws IOException {
-    int b = 0;
-    while ((b = in.read()) > 0) {
-      messageBuilder.write(b);
-    }
-    if (messageBuilder.size() != 0 && socketListener != null) {
-      messageBuilder.write('\0');
-      String message = messageBuilder.toString(Constants.UTF_8_CHARSET_NAME);
-
-      logger.trace("Received message: {}", message);
-
-      socketListener.onMessageReceived(message);
+  /**
+   * Reads available data into the {@param buffer} and passes all of the complete
+   * messages to the listener as views of the buffer. As the ownership of the
+   * arrays is passed to {@link ByteTransportListener}s, the buffer is handed over
+   * to them and replaced with a fresh one that gets the incomplete rest of the
+   * data, unless messages only take a small part of it (then they are copied out
+   * as it is cheaper than allocating a new buffer). If the stream ends, the rest
+   * of the data is passed to the listener as the last message.
+   */
+  void processMessage(InputStream in, ReceiveBuffer buffer) throws IOException {
+    if (buffer.length == buffer.data.length) {
+      buffer.data = Arrays.copyOf(buffer.data, buffer.data.length * 2);
     }
-    messageBuilder.reset();
-    if (b == -1) {
+    final int read = in.read(buffer.data, buffer.length, buffer.data.length - buffer.length);
+    if (read == -1) {
+      if (buffer.length != 0) {
+        // deliver the unterminated message received right before closing
+        buffer.onFrame(Arrays.copyOf(buffer.data, buffer.length), 0, buffer.length);
+        buffer.length = 0;
+      }
       logger.trace("Remote host closed connection (Input steam closed)");
       closeInternal();
+      return;
+    }
+    // the rest of the previous reads contains no separators
+    final int from = buffer.length;
+    buffer.length += read;
+    int end = buffer.length;
+    while (end > from && buffer.data[end - 1] != Constants.SEPARATOR) {
+      end--;
+    }
+    if (end == from) {
+      return;
+    }
+    final byte[] data = buffer.data;
+    if (!(socketListener instanceof ByteTransportListener)) {
+      // messages are decoded into Strings right away, so the buffer stays ours
+      JSNetworkParser.split(data, 0, end, buffer);
+      buffer.length = JSNetworkParser.compact(data, end, buffer.length);
+    } else if (end < data.length / MIN_HANDED_OVER_FILL) {
+      final byte[] messages = Arrays.copyOf(data, end);
+      JSNetworkParser.split(messages, 0, end, buffer);
+      buffer.length = JSNetworkParser.compact(data, end, buffer.length);
+    } else {
+      final int rest = buffer.length - end;
+      buffer.data = new byte[data.length];
+      System.arraycopy(data, end, buffer.data, 0, rest);
+      buffer.length = rest;
+      JSNetworkParser.split(data, 0, end, buffer);
     }
   }
 
@@ -309,7 +371,7 @@ public class TCPTransport implements Transport {
     if (socket != null && socket.isConnected()) {
       logger.trace("Created socket: {}:{}", host, port);
       running = true;
-      out = socket.getOutputStream();
+      out = new BufferedOutputStream(socket.getOutputStream());
       in = new BufferedInputStream(socket.getInputStream());
       return true;
     }
@@ -340,6 +402,15 @@ public class TCPTransport implements Transport {
 
   @Override
   public void send(String message) {
+    enqueue(message);
+  }
+
+  @Override
+  public void send(byte[] message, int offset, int length) {
+    enqueue(ByteBuffer.wrap(message, offset, length));
+  }
+
+  private void enqueue(Object message) {
     messageQueue.add(message);
     if (running) {
       synchronized (senderLock) {
@@ -546,6 +617,31 @@ public class TCPTransport implements Transport {
     this.closingTimeout = closingTimeout;
   }
 
+  /**
+   * Reusable buffer of the received data that is not handled yet, it passes
+   * the messages found in the data to the transport listener
+   */
+  class ReceiveBuffer implements FrameListener {
+
+    byte[] data = new byte[DEFAULT_RECEIVE_BUFFER_SIZE];
+
+    int length;
+
+    @Override
+    public void onFrame(byte[] buffer, int offset, int length) {
+      if (logger.isTraceEnabled()) {
+        logger.trace("Received message: {}",
+            new String(buffer, offset, length, Constants.UTF_8_CHARSET));
+      }
+      final TransportListener listener = socketListener;
+      if (listener instanceof ByteTransportListener) {
+        ((ByteTransportListener) listener).onMessageReceived(buffer, offset, length);
+      } else if (listener != null) {
+        listener.onMessageReceived(new String(buffer, offset, length, Constants.UTF_8_CHARSET));
+      }
+    }
+  }
+
   public interface ConnectCallback {
 
     void onConnected(TCPTransport transport);
@@ -82,4 +82,22 @@ public interface Transport {
      */
     void onTransportError(Exception e);
   }
+
+  /**
+   * Transport event listener that also accepts raw UTF-8 encoded messages,
+   * transports that support it pass received messages to such listeners
+   * without decoding them into Strings
+   */
+  interface ByteTransportListener extends TransportListener {
+
+    /**
+     * Called when message is received as raw UTF-8 encoded bytes, the ownership
+     * of the {@param message} array is passed to the listener
+     *
+     * @param message array containing message received over the connection
+     * @param offset  index of the first byte of the message
+     * @param length  number of bytes in the message
+     */
+    void onMessageReceived(byte[] message, int offset, int length);
+  }
 }
@@ -7,7 +7,9 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
@@ -33,6 +35,7 @@ import com.metarhia.jstp.core.JSSerializer;
 import com.metarhia.jstp.core.JSTypes.IndexedHashMap;
 import com.metarhia.jstp.core.JSTypes.JSElements;
 import com.metarhia.jstp.handlers.OkErrorHandler;
+import com.metarhia.jstp.transport.ByteTransport;
 import com.metarhia.jstp.transport.Transport;
 import com.metarhia.jstp.transport.Transport.TransportListener;
 import java.util.Arrays;
@@ -45,6 +48,7 @@ import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Spy;
 import org.mockito.invocation.InvocationOnMock;
@@ -305,6 +309,25 @@ public class ConnectionTest {
     assertEquals("Application must not be null", exception.getMessage());
   }
 
+  @Test
+  void sendBytes() throws Exception {
+    final ByteTransport byteTransport = mock(ByteTransport.class);
+    when(byteTransport.isConnected()).thenReturn(true);
+    final Connection byteConnection = new Connection(byteTransport);
+    final List<String> args = Arrays.asList("Марк", "Аврелий");
+
+    byteConnection.event("auth", "insert", args);
+
+    final ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+    verify(byteTransport, times(1)).send(captor.capture(), eq(0), anyInt());
+    verify(byteTransport, never()).send(anyString());
+    final Message expected = new Message(0, MessageType.EVENT)
+        .putArg("insert", args)
+        .addProtocolArg("auth");
+    assertEquals(expected.stringify(),
+        new String(captor.getValue(), TestConstants.UTF_8_CHARSET));
+  }
+
   @Test
   void call() throws Exception {
     for (BasicArguments ba : callMessages) {
@@ -1,17 +1,29 @@
 package com.metarhia.jstp.messagehandling;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.metarhia.jstp.Constants;
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
+import com.metarhia.jstp.core.JSMessageHeader;
+import com.metarhia.jstp.core.JSParser;
 import com.metarhia.jstp.core.JSSerializer;
 import com.metarhia.jstp.core.JSTypes.JSElements;
 import com.metarhia.jstp.exceptions.MessageHandlingException;
 import com.metarhia.jstp.messagehandling.MessageHandler.MessageHandlerListener;
+import com.metarhia.jstp.messagehandling.MessageHandlerImpl.HeaderFilter;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 class MessageHandlerImplTest {
 
@@ -48,6 +60,67 @@ class MessageHandlerImplTest {
         .onHandlingError(any(MessageHandlingException.class));
   }
 
+  @Test
+  void postFiltered() throws InterruptedException {
+    MessageHandlerListener listener = mock(MessageHandlerListener.class);
+    MessageHandlerImpl messageHandler = new MessageHandlerImpl(listener);
+    messageHandler.setHeaderFilter(new HeaderFilter() {
+      @Override
+      public boolean accept(JSMessageHeader header) {
+        return !"ignored".equals(header.getInterfaceName());
+      }
+    });
+
+    messageHandler.post("{event:[1,'ignored'],name:[]}");
+    messageHandler.post("{event:[2,'handled'],name:[]}");
+    messageHandler.post(JSSerializer.stringify(JSElements.EMPTY_OBJECT));
+
+    synchronized (MessageHandlerImplTest.this) {
+      wait(500);
+    }
+
+    verify(listener, times(2))
+        .onMessageParsed(any(JSObject.class));
+    verify(listener, times(1))
+        .onMessageParsed(JSElements.EMPTY_OBJECT);
+  }
+
+  @Test
+  void postAfterListenerError() throws InterruptedException {
+    postAfterListenerError(false);
+  }
+
+  @Test
+  void postAfterListenerErrorDraining() throws InterruptedException {
+    postAfterListenerError(true);
+  }
+
+  private void postAfterListenerError(boolean draining) throws InterruptedException {
+    MessageHandlerListener listener = mock(MessageHandlerListener.class);
+    doThrow(new AssertionError("listener failure")).doNothing()
+        .when(listener).onMessageParsed(any(JSObject.class));
+    MessageHandlerImpl messageHandler = new MessageHandlerImpl(listener);
+    messageHandler.setDraining(draining);
+
+    messageHandler.post("{ping:[1]}");
+    messageHandler.post("{ping:[2]}");
+
+    synchronized (MessageHandlerImplTest.this) {
+      wait(500);
+    }
+
+    messageHandler.post(JSSerializer.stringify(JSElements.EMPTY_OBJECT));
+
+    synchronized (MessageHandlerImplTest.this) {
+      wait(500);
+    }
+
+    verify(listener, times(3))
+        .onMessageParsed(any(JSObject.class));
+    verify(listener, times(1))
+        .onMessageParsed(JSElements.EMPTY_OBJECT);
+  }
+
   @Test
   void clearQueue() throws InterruptedException {
     MessageHandlerListener listener = mock(MessageHandlerListener.class);
@@ -67,4 +140,94 @@ class MessageHandlerImplTest {
     verify(listener, never())
         .onHandlingError(any(MessageHandlingException.class));
   }
+
+  @Test
+  void postOrdered() throws Exception {
+    postOrdered(false);
+  }
+
+  @Test
+  void postOrderedDraining() throws Exception {
+    postOrdered(true);
+  }
+
+  private void postOrdered(boolean draining) throws Exception {
+    MessageHandlerListener listener = mock(MessageHandlerListener.class);
+    MessageHandlerImpl messageHandler = new MessageHandlerImpl(listener);
+    messageHandler.setDraining(draining);
+
+    final int messagesCount = 100;
+    for (int i = 0; i < messagesCount; i++) {
+      final String message = "{ping:[" + i + "]}";
+      if (i % 2 == 0) {
+        messageHandler.post(message);
+      } else {
+        final byte[] bytes = message.getBytes(Constants.UTF_8_CHARSET);
+        messageHandler.post(bytes, 0, bytes.length);
+      }
+    }
+
+    synchronized (MessageHandlerImplTest.this) {
+      wait(500);
+    }
+
+    InOrder inOrder = inOrder(listener);
+    for (int i = 0; i < messagesCount; i++) {
+      inOrder.verify(listener).onMessageParsed(
+          JSParser.<JSObject>parse("{ping:[" + i + "]}"));
+    }
+  }
+
+  @Test
+  void postAfterClearQueue() throws InterruptedException {
+    MessageHandlerListener listener = mock(MessageHandlerListener.class);
+    MessageHandlerImpl messageHandler = new MessageHandlerImpl(listener);
+    messageHandler.setDraining(true);
+
+    messageHandler.post("{ping:[1]}");
+    messageHandler.clearQueue();
+    messageHandler.post(JSSerializer.stringify(JSElements.EMPTY_OBJECT));
+
+    synchronized (MessageHandlerImplTest.this) {
+      wait(500);
+    }
+
+    verify(listener, times(1))
+        .onMessageParsed(JSElements.EMPTY_OBJECT);
+  }
+
+  @Test
+  void postCached() throws Exception {
+    MessageHandlerListener listener = mock(MessageHandlerListener.class);
+    MessageHandlerImpl messageHandler = new MessageHandlerImpl(listener);
+    final ParseCache cache = new ParseCache(1, ParseCache.DEFAULT_MAX_FRAME_LENGTH);
+    messageHandler.setParseCache(cache);
+
+    final String message = "{event:[-1,'status'],snapshot:[{state:'ok'}]}";
+    final byte[] bytes = message.getBytes(Constants.UTF_8_CHARSET);
+    messageHandler.post(message);
+    messageHandler.post(message);
+    messageHandler.post(bytes, 0, bytes.length);
+    messageHandler.post(bytes, 0, bytes.length);
+    messageHandler.post(message);
+
+    synchronized (MessageHandlerImplTest.this) {
+      wait(500);
+    }
+
+    ArgumentCaptor<JSObject> captor = ArgumentCaptor.forClass(JSObject.class);
+    verify(listener, times(5)).onMessageParsed(captor.capture());
+    final List<JSObject> parsed = captor.getAllValues();
+    assertEquals(JSParser.parse(message), parsed.get(0));
+    assertSame(parsed.get(0), parsed.get(1));
+    assertSame(parsed.get(2), parsed.get(3));
+    assertEquals(parsed.get(0), parsed.get(2));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(1, cache.size());
+
+    final List<JSObject> snapshot = (List<JSObject>) parsed.get(4).get("snapshot");
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.get(0).put("state", "?"));
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(0));
+  }
 }
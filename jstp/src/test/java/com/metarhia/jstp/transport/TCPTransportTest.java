@@ -1,9 +1,11 @@
 package com.metarhia.jstp.transport;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -18,11 +20,16 @@ import com.metarhia.jstp.core.Handlers.ManualHandler;
 import com.metarhia.jstp.core.JSInterfaces.JSObject;
 import com.metarhia.jstp.core.JSParser;
 import com.metarhia.jstp.handlers.OkErrorHandler;
+import com.metarhia.jstp.transport.Transport.ByteTransportListener;
+import com.metarhia.jstp.transport.Transport.TransportListener;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 
 /**
  * Created by lundibundi on 2/18/17.
@@ -51,14 +58,14 @@ public class TCPTransportTest {
     final byte[] packetBytes = packet.getBytes(TestConstants.UTF_8_CHARSET);
     final ByteArrayInputStream mockStream = new ByteArrayInputStream(packetBytes);
     final BufferedInputStream in = new BufferedInputStream(mockStream);
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream(100);
+    final TCPTransport.ReceiveBuffer buffer = tcpTransport.new ReceiveBuffer();
 
     final Thread readThread = new Thread(new Runnable() {
       @Override
       public void run() {
         try {
           while (in.available() > 0) {
-            tcpTransport.processMessage(in, baos);
+            tcpTransport.processMessage(in, buffer);
           }
         } catch (IOException e) {
           fail("Unexpected error during message feed", e);
@@ -83,4 +90,98 @@ public class TCPTransportTest {
     verify(handler, times(1))
         .onMessage(JSParser.<JSObject>parse(callbackMessage));
   }
+
+  @Test
+  public void onMessageReceivedString() throws Exception {
+    final TCPTransport transport = new TCPTransport("", 0);
+    final TransportListener listener = mock(TransportListener.class);
+    transport.setListener(listener);
+
+    final String message = "{event:[18,'auth'],insert:['Марк Аврелий']}";
+    final byte[] packetBytes = (message + Constants.SEPARATOR)
+        .getBytes(TestConstants.UTF_8_CHARSET);
+    transport.processMessage(new ByteArrayInputStream(packetBytes),
+        transport.new ReceiveBuffer());
+
+    // listeners that don't accept bytes get decoded messages
+    verify(listener, times(1)).onMessageReceived(message);
+  }
+
+  @Test
+  public void onMessageReceivedBeforeClose() throws Exception {
+    final TCPTransport transport = new TCPTransport("", 0);
+    final TransportListener listener = mock(TransportListener.class);
+    transport.setListener(listener);
+
+    final byte[] packetBytes = ("{ping:[1]}" + Constants.SEPARATOR + "{pong:[1]}")
+        .getBytes(TestConstants.UTF_8_CHARSET);
+    final InputStream in = new ByteArrayInputStream(packetBytes);
+    final TCPTransport.ReceiveBuffer buffer = transport.new ReceiveBuffer();
+    transport.processMessage(in, buffer);
+    transport.processMessage(in, buffer);
+
+    // the unterminated message is delivered when the stream ends
+    final InOrder inOrder = inOrder(listener);
+    inOrder.verify(listener).onMessageReceived("{ping:[1]}");
+    inOrder.verify(listener).onMessageReceived("{pong:[1]}");
+  }
+
+  @Test
+  public void onMessageReceivedBytes() throws Exception {
+    final TCPTransport transport = new TCPTransport("", 0);
+    final List<String> received = new ArrayList<>();
+    transport.setListener(new ByteListener() {
+      @Override
+      public void onMessageReceived(byte[] message, int offset, int length) {
+        received.add(new String(message, offset, length, TestConstants.UTF_8_CHARSET));
+      }
+    });
+
+    final List<String> messages = new ArrayList<>();
+    final StringBuilder packet = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      final StringBuilder message = new StringBuilder("{ping:[").append(i).append("],s:'");
+      for (int j = 0; j < i * i % 5000; j++) {
+        message.append('ы');
+      }
+      messages.add(message.append("'}").toString());
+      packet.append(message).append(Constants.SEPARATOR);
+    }
+    final byte[] packetBytes = packet.toString().getBytes(TestConstants.UTF_8_CHARSET);
+    // return data in chunks of different sizes
+    final InputStream in = new ByteArrayInputStream(packetBytes) {
+      private int reads;
+
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, ++reads * 997 % 20000 + 1));
+      }
+    };
+    final TCPTransport.ReceiveBuffer buffer = transport.new ReceiveBuffer();
+    while (in.available() > 0) {
+      transport.processMessage(in, buffer);
+    }
+
+    assertEquals(messages, received);
+  }
+
+  private abstract static class ByteListener implements ByteTransportListener {
+
+    @Override
+    public void onTransportConnected() {
+    }
+
+    @Override
+    public void onMessageReceived(String message) {
+      fail("Messages must be passed as bytes");
+    }
+
+    @Override
+    public void onTransportClosed() {
+    }
+
+    @Override
+    public void onTransportError(Exception e) {
+    }
+  }
 }